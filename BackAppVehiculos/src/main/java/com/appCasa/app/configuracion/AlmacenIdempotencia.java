@@ -0,0 +1,110 @@
+package com.appCasa.app.configuracion;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Peticiones ya atendidas por clave de idempotencia, con la huella de la
+ * petición y la respuesta que se dio. Las entradas caducan por antigüedad y,
+ * si se supera la capacidad, se descartan las más antiguas ya completadas; ambas
+ * cosas solo tocan el principio del mapa, que está en orden de llegada. Las que
+ * siguen en curso no se descartan por capacidad, porque un reintento llegaría
+ * como petición nueva y se ejecutaría dos veces.
+ */
+@Component
+public class AlmacenIdempotencia {
+
+    public enum Estado {
+        NUEVA,
+        EN_CURSO,
+        OTRA_PETICION,
+        REPETIDA
+    }
+
+    public record RespuestaGuardada(int estado, String tipoContenido, byte[] cuerpo) {
+    }
+
+    public record Consulta(Estado estado, RespuestaGuardada respuesta) {
+    }
+
+    private static final class Entrada {
+        private final String huella;
+        private final long creada;
+        private RespuestaGuardada respuesta;
+
+        private Entrada(String huella, long creada) {
+            this.huella = huella;
+            this.creada = creada;
+        }
+    }
+
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>();
+    private long repetidas;
+    private long rechazadas;
+
+    @Value("${app.idempotencia.capacidad:10000}")
+    private int capacidad;
+
+    @Value("${app.idempotencia.ttl-minutos:1440}")
+    private long ttlMinutos;
+
+    public synchronized Consulta reservar(String clave, String huella) {
+        long ahora = System.currentTimeMillis();
+        purgar(ahora);
+        Entrada entrada = entradas.get(clave);
+        if (entrada == null) {
+            entradas.put(clave, new Entrada(huella, ahora));
+            Iterator<Entrada> masAntiguas = entradas.values().iterator();
+            while (entradas.size() > capacidad && masAntiguas.hasNext()) {
+                if (masAntiguas.next().respuesta != null) {
+                    masAntiguas.remove();
+                }
+            }
+            return new Consulta(Estado.NUEVA, null);
+        }
+        if (!entrada.huella.equals(huella)) {
+            rechazadas++;
+            return new Consulta(Estado.OTRA_PETICION, null);
+        }
+        if (entrada.respuesta == null) {
+            rechazadas++;
+            return new Consulta(Estado.EN_CURSO, null);
+        }
+        repetidas++;
+        return new Consulta(Estado.REPETIDA, entrada.respuesta);
+    }
+
+    public synchronized void completar(String clave, RespuestaGuardada respuesta) {
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null) {
+            entrada.respuesta = respuesta;
+        }
+    }
+
+    public synchronized void liberar(String clave) {
+        entradas.remove(clave);
+    }
+
+    public synchronized Map<String, Object> estadisticas() {
+        return Map.of(
+                "entradas", entradas.size(),
+                "capacidad", capacidad,
+                "repetidas", repetidas,
+                "rechazadas", rechazadas);
+    }
+
+    private void purgar(long ahora) {
+        long limite = ahora - ttlMinutos * 60_000;
+        Iterator<Entrada> masAntiguas = entradas.values().iterator();
+        while (masAntiguas.hasNext()) {
+            if (masAntiguas.next().creada > limite) {
+                return;
+            }
+            masAntiguas.remove();
+        }
+    }
+}
@@ -17,7 +17,7 @@ public class CorsConfig {
                                 "http://192.168.157.164:8080", "http://localhost:19006", "http://192.168.157.164:19006")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
-                        .exposedHeaders("Authorization")
+                        .exposedHeaders("Authorization", "X-Siguiente-Cursor", "X-Respuesta-Repetida")
                         .allowCredentials(true);
             }
         };
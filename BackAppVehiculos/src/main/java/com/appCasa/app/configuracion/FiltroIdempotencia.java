@@ -0,0 +1,242 @@
+package com.appCasa.app.configuracion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Atiende los reintentos de las altas con la misma cabecera Idempotency-Key
+ * devolviendo la respuesta guardada, sin volver a ejecutar la petición. La
+ * clave se guarda por usuario y ruta; reutilizarla con otro cuerpo es un error.
+ */
+@Component
+public class FiltroIdempotencia extends OncePerRequestFilter {
+
+    public static final String CABECERA = "Idempotency-Key";
+    private static final String CABECERA_REPETIDA = "X-Respuesta-Repetida";
+    private static final int LONGITUD_MAXIMA_CLAVE = 255;
+    private static final int TAMAÑO_MAXIMO_RESPUESTA = 256 * 1024;
+    private static final List<String> RUTAS = List.of(
+            "/api/reservas",
+            "/api/reservas/lote",
+            "/api/vehiculos",
+            "/api/vehiculos/*/imagenes");
+
+    private final AntPathMatcher rutas = new AntPathMatcher();
+
+    @Autowired
+    private AlmacenIdempotencia almacen;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod()) || request.getHeader(CABECERA) == null) {
+            return true;
+        }
+        String ruta = request.getServletPath();
+        return RUTAS.stream().noneMatch(patron -> rutas.match(patron, ruta));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+                                    throws ServletException, IOException {
+
+        String clave = request.getHeader(CABECERA).trim();
+        if (clave.isEmpty() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            escribirError(response, 400, "La cabecera Idempotency-Key no es válida.");
+            return;
+        }
+
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        String usuario = autenticacion != null ? autenticacion.getName() : "";
+        String alcance = usuario + "|" + request.getServletPath() + "|" + clave;
+
+        HttpServletRequest peticion = request;
+        String huella;
+        String tipo = request.getContentType();
+        if (tipo != null && tipo.startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)) {
+            Collection<Part> partes;
+            try {
+                partes = request.getParts();
+            } catch (IllegalStateException | ServletException e) {
+                // Demasiado grande o mal formada: el error lo da quien procese la petición.
+                filterChain.doFilter(request, response);
+                return;
+            }
+            huella = resumenPartes(partes) + resumen(String.valueOf(request.getQueryString())
+                    .getBytes(StandardCharsets.UTF_8));
+        } else {
+            byte[] cuerpo = request.getInputStream().readAllBytes();
+            peticion = new CuerpoEnMemoria(request, cuerpo);
+            huella = resumen(cuerpo) + resumen(String.valueOf(request.getQueryString())
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        AlmacenIdempotencia.Consulta consulta = almacen.reservar(alcance, huella);
+        switch (consulta.estado()) {
+            case EN_CURSO -> {
+                escribirError(response, 409, "Ya se está procesando una petición con esta Idempotency-Key.");
+                return;
+            }
+            case OTRA_PETICION -> {
+                escribirError(response, 422, "La Idempotency-Key ya se usó con una petición distinta.");
+                return;
+            }
+            case REPETIDA -> {
+                AlmacenIdempotencia.RespuestaGuardada guardada = consulta.respuesta();
+                response.setStatus(guardada.estado());
+                if (guardada.tipoContenido() != null) {
+                    response.setContentType(guardada.tipoContenido());
+                }
+                response.setHeader(CABECERA_REPETIDA, "true");
+                response.setContentLength(guardada.cuerpo().length);
+                response.getOutputStream().write(guardada.cuerpo());
+                return;
+            }
+            default -> {
+            }
+        }
+
+        ContentCachingResponseWrapper envoltura = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(peticion, envoltura);
+            byte[] cuerpo = envoltura.getContentAsByteArray();
+            if (envoltura.getStatus() < 500 && cuerpo.length <= TAMAÑO_MAXIMO_RESPUESTA) {
+                almacen.completar(alcance, new AlmacenIdempotencia.RespuestaGuardada(
+                        envoltura.getStatus(), envoltura.getContentType(), cuerpo));
+            } else {
+                almacen.liberar(alcance);
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            almacen.liberar(alcance);
+            throw e;
+        } finally {
+            envoltura.copyBodyToResponse();
+        }
+    }
+
+    private void escribirError(HttpServletResponse response, int estado, String mensaje) throws IOException {
+        response.setStatus(estado);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", mensaje));
+    }
+
+    private static String resumen(byte[] datos) {
+        return HexFormat.of().formatHex(sha256().digest(datos));
+    }
+
+    /**
+     * Resume nombre, fichero y contenido de cada parte en orden. El contenido se
+     * lee por trozos desde donde lo haya dejado el contenedor (memoria o disco
+     * temporal), sin cargar los ficheros enteros.
+     */
+    private static String resumenPartes(Collection<Part> partes) throws IOException {
+        MessageDigest resumen = sha256();
+        byte[] trozo = new byte[8192];
+        for (Part parte : partes) {
+            resumen.update((parte.getName() + "\0" + parte.getSubmittedFileName() + "\0"
+                    + parte.getSize() + "\0").getBytes(StandardCharsets.UTF_8));
+            try (InputStream contenido = parte.getInputStream()) {
+                int leidos;
+                while ((leidos = contenido.read(trozo)) > 0) {
+                    resumen.update(trozo, 0, leidos);
+                }
+            }
+        }
+        return HexFormat.of().formatHex(resumen.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class CuerpoEnMemoria extends HttpServletRequestWrapper {
+
+        private final byte[] cuerpo;
+
+        private CuerpoEnMemoria(HttpServletRequest request, byte[] cuerpo) {
+            super(request);
+            this.cuerpo = cuerpo;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream entrada = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return entrada.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return entrada.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return entrada.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                /** El cuerpo ya está entero en memoria: se avisa al momento. */
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
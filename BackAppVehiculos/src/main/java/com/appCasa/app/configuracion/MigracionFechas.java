@@ -0,0 +1,71 @@
+package com.appCasa.app.configuracion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Convierte a DATE las columnas de fecha que en bases antiguas se crearon como
+ * texto. ddl-auto=update no cambia el tipo de columnas existentes, así que se
+ * hace aquí una sola vez: las que ya son DATE se dejan como están. Si una
+ * columna no se puede convertir (por ejemplo, por un valor que MySQL no acepta
+ * como fecha) se avisa en el log y la aplicación arranca igualmente; se vuelve
+ * a intentar en el siguiente arranque.
+ */
+@Component
+public class MigracionFechas implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MigracionFechas.class);
+
+    private record ColumnaFecha(String tabla, String columna, boolean nula) {
+    }
+
+    private static final List<ColumnaFecha> COLUMNAS = List.of(
+            new ColumnaFecha("reservas", "fecha_inicio", true),
+            new ColumnaFecha("reservas", "fecha_fin", true),
+            new ColumnaFecha("reservas", "fecha_reserva", true),
+            new ColumnaFecha("reservas", "fecha_expiracion", true),
+            new ColumnaFecha("disponibilidades", "fecha_inicio", false),
+            new ColumnaFecha("disponibilidades", "fecha_fin", false));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (ColumnaFecha c : COLUMNAS) {
+            try {
+                convertir(c);
+            } catch (DataAccessException e) {
+                log.warn("No se ha podido convertir {}.{} a DATE; se reintentará en el próximo arranque.",
+                        c.tabla(), c.columna(), e);
+            }
+        }
+    }
+
+    private void convertir(ColumnaFecha c) {
+        List<String> tipos = jdbcTemplate.queryForList(
+                "SELECT DATA_TYPE FROM information_schema.COLUMNS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?",
+                String.class, c.tabla(), c.columna());
+        if (tipos.isEmpty() || "date".equalsIgnoreCase(tipos.get(0))) {
+            return;
+        }
+        // Valores como "2024-05-01T00:00:00.000Z" se quedan en la parte de fecha.
+        jdbcTemplate.update("UPDATE " + c.tabla() + " SET " + c.columna() + " = LEFT(" + c.columna() + ", 10) "
+                + "WHERE LENGTH(" + c.columna() + ") > 10");
+        if (c.nula()) {
+            jdbcTemplate.update("UPDATE " + c.tabla() + " SET " + c.columna() + " = NULL "
+                    + "WHERE " + c.columna() + " = '' OR STR_TO_DATE(" + c.columna() + ", '%Y-%m-%d') IS NULL");
+        }
+        jdbcTemplate.execute("ALTER TABLE " + c.tabla() + " MODIFY " + c.columna() + " DATE"
+                + (c.nula() ? " NULL" : " NOT NULL"));
+    }
+}
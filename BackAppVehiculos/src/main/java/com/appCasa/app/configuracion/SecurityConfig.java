@@ -50,6 +50,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.POST, "/api/reseñas/responder/**").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/reseñas/propietario").authenticated()
                         .requestMatchers(HttpMethod.POST, "/api/reservas").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/api/reservas/lote").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/reservas/usuario").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/reservas/dueño").authenticated()
                         .requestMatchers(HttpMethod.PUT, "/api/reservas/confirmar/**").authenticated()
@@ -64,6 +65,8 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/vehiculos/{id}/contactar").authenticated()
                         .requestMatchers(HttpMethod.POST, "/api/alertas").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/alertas").authenticated()
+                        .requestMatchers(HttpMethod.GET, "/api/alertas/*/coincidencias").authenticated()
+                        .requestMatchers(HttpMethod.PUT, "/api/alertas/frecuencia").authenticated()
                         .requestMatchers(HttpMethod.DELETE, "/api/alertas/**").authenticated()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/admin/reservas").hasRole("ADMIN")
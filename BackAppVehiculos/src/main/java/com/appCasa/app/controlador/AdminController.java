@@ -1,9 +1,18 @@
 package com.appCasa.app.controlador;
 
+import com.appCasa.app.configuracion.AlmacenIdempotencia;
 import com.appCasa.app.modelo.Vehiculo;
 import com.appCasa.app.modelo.Reserva;
 import com.appCasa.app.modelo.Usuario;
 import com.appCasa.app.seguridad.JwtUtil;
+import com.appCasa.app.servicio.CacheBusquedas;
+import com.appCasa.app.servicio.CoincidenciasAlertaService;
+import com.appCasa.app.servicio.ColaAlertas;
+import com.appCasa.app.servicio.CompactacionDisponibilidad;
+import com.appCasa.app.servicio.DisponibilidadService;
+import com.appCasa.app.servicio.EmailService;
+import com.appCasa.app.servicio.EnvioCorreos;
+import com.appCasa.app.servicio.EventosReservaService;
 import com.appCasa.app.servicio.VehiculoService;
 import com.appCasa.app.servicio.ReservaService;
 import com.appCasa.app.servicio.UsuarioService;
@@ -36,6 +45,33 @@ public class AdminController {
     @Autowired
     private ReservaService reservaService;
 
+    @Autowired
+    private CacheBusquedas cacheBusquedas;
+
+    @Autowired
+    private DisponibilidadService disponibilidadService;
+
+    @Autowired
+    private AlmacenIdempotencia almacenIdempotencia;
+
+    @Autowired
+    private EventosReservaService eventosReservaService;
+
+    @Autowired
+    private CompactacionDisponibilidad compactacionDisponibilidad;
+
+    @Autowired
+    private ColaAlertas colaAlertas;
+
+    @Autowired
+    private CoincidenciasAlertaService coincidenciasAlertaService;
+
+    @Autowired
+    private EnvioCorreos envioCorreos;
+
+    @Autowired
+    private EmailService emailService;
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -298,4 +334,39 @@ public class AdminController {
         List<Reserva> reservas = reservaService.listarReservas();
         return ResponseEntity.ok(reservas);
     }
+
+    @Operation(summary = "Métricas internas", description = "Devuelve contadores de la caché de búsquedas, del almacén de idempotencia y de las colas de eventos, alertas y correos")
+    @ApiResponse(responseCode = "200", description = "Métricas obtenidas exitosamente")
+    @GetMapping("/metricas")
+    public ResponseEntity<Map<String, Object>> obtenerMetricas() {
+        return ResponseEntity.ok(Map.of(
+                "cacheBusquedas", cacheBusquedas.estadisticas(),
+                "idempotencia", almacenIdempotencia.estadisticas(),
+                "eventosReserva", eventosReservaService.estadisticas(),
+                "colaAlertas", colaAlertas.estadisticas(),
+                "rellenoAlertas", coincidenciasAlertaService.estadisticas(),
+                "correos", envioCorreos.estadisticas()));
+    }
+
+    @Operation(summary = "Reintentar correos descartados", description = "Vuelve a poner en la cola los correos que agotaron sus reintentos")
+    @ApiResponse(responseCode = "200", description = "Correos devueltos a la cola")
+    @PutMapping("/correos/reintentar")
+    public ResponseEntity<Map<String, Object>> reintentarCorreos() {
+        return ResponseEntity.ok(Map.of("reactivados", emailService.reactivarDescartados()));
+    }
+
+    @Operation(summary = "Reconstruir calendarios de disponibilidad", description = "Descarta los calendarios en memoria; se recargan de la base de datos en la siguiente consulta")
+    @ApiResponse(responseCode = "204", description = "Calendarios descartados")
+    @PutMapping("/disponibilidades/reconstruir")
+    public ResponseEntity<Void> reconstruirDisponibilidades() {
+        disponibilidadService.reconstruirIndice();
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(summary = "Compactar bloques de disponibilidad", description = "Funde los bloques contiguos o solapados con el mismo motivo sin esperar a la tarea nocturna")
+    @ApiResponse(responseCode = "200", description = "Vehículos revisados y filas eliminadas")
+    @PutMapping("/disponibilidades/compactar")
+    public ResponseEntity<Map<String, Integer>> compactarDisponibilidades() {
+        return ResponseEntity.ok(compactacionDisponibilidad.compactar());
+    }
 }
\ No newline at end of file
@@ -1,9 +1,12 @@
 package com.appCasa.app.controlador;
 
 import com.appCasa.app.modelo.Alerta;
+import com.appCasa.app.modelo.FrecuenciaAlertas;
+import com.appCasa.app.modelo.PaginaVehiculos;
 import com.appCasa.app.modelo.Usuario;
 import com.appCasa.app.seguridad.JwtUtil;
 import com.appCasa.app.servicio.AlertaService;
+import com.appCasa.app.servicio.CoincidenciasAlertaService;
 import com.appCasa.app.servicio.UsuarioService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -25,6 +28,9 @@ public class AlertaController {
     @Autowired
     private AlertaService alertaService;
 
+    @Autowired
+    private CoincidenciasAlertaService coincidenciasAlertaService;
+
     @Autowired
     private UsuarioService usuarioService;
 
@@ -72,4 +78,61 @@ public class AlertaController {
         alertaService.eliminarAlerta(id, usuario);
         return ResponseEntity.ok(Map.of("mensaje", "Alerta eliminada correctamente"));
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Vehículos que coinciden con una alerta", description = "Lista los vehículos validados y no reservados que cumplen la alerta, de la coincidencia más reciente a la más antigua. Incluye los publicados antes de crearla en cuanto termina su búsqueda en segundo plano. El cursor de la siguiente página se devuelve en la cabecera X-Siguiente-Cursor")
+    @ApiResponse(responseCode = "200", description = "Coincidencias obtenidas exitosamente")
+    @ApiResponse(responseCode = "400", description = "Cursor de paginación no válido")
+    @ApiResponse(responseCode = "403", description = "La alerta es de otro usuario")
+    @ApiResponse(responseCode = "404", description = "Alerta no encontrada")
+    @GetMapping("/{id}/coincidencias")
+    public ResponseEntity<?> listarCoincidencias(@PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer tamaño,
+            @RequestHeader("Authorization") String authHeader) {
+        String token = authHeader.substring(7);
+        String email = jwtUtil.extraerEmail(token);
+        Usuario usuario = usuarioService.buscarPorEmail(email)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+
+        Alerta alerta = alertaService.buscarAlerta(id);
+        if (alerta == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!AlertaService.esDeUsuario(alerta, usuario) && !usuario.getRol().equals("ADMIN")) {
+            return ResponseEntity.status(403).body(Map.of("error", "No autorizado para ver esta alerta."));
+        }
+
+        try {
+            PaginaVehiculos pagina = coincidenciasAlertaService.coincidencias(id, cursor, tamaño);
+            ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+            if (pagina.getSiguienteCursor() != null) {
+                respuesta.header("X-Siguiente-Cursor", pagina.getSiguienteCursor());
+            }
+            return respuesta.body(pagina.getVehiculos());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Frecuencia de los avisos", description = "Elige si los vehículos que coinciden con las alertas se avisan al momento (INMEDIATA) o agrupados en un resumen cada hora (HORARIA) o cada día (DIARIA)")
+    @ApiResponse(responseCode = "200", description = "Frecuencia actualizada exitosamente")
+    @ApiResponse(responseCode = "400", description = "Frecuencia no válida")
+    @PutMapping("/frecuencia")
+    public ResponseEntity<?> cambiarFrecuencia(@RequestParam String valor,
+            @RequestHeader("Authorization") String authHeader) {
+        String token = authHeader.substring(7);
+        String email = jwtUtil.extraerEmail(token);
+        Usuario usuario = usuarioService.buscarPorEmail(email)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+
+        FrecuenciaAlertas frecuencia;
+        try {
+            frecuencia = FrecuenciaAlertas.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Frecuencia no válida: " + valor));
+        }
+        usuario.setFrecuenciaAlertas(frecuencia);
+        usuarioService.guardarUsuario(usuario);
+        return ResponseEntity.ok(Map.of("frecuencia", frecuencia));
+    }
+}
@@ -5,14 +5,18 @@ import com.appCasa.app.modelo.Usuario;
 import com.appCasa.app.seguridad.JwtUtil;
 import com.appCasa.app.servicio.DisponibilidadService;
 import com.appCasa.app.servicio.UsuarioService;
+import com.appCasa.app.servicio.VehiculoNoEncontradoException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/disponibilidades")
@@ -29,13 +33,19 @@ public class DisponibilidadController {
     @Autowired
     private JwtUtil jwtUtil;
 
-    @Operation(summary = "Agregar disponibilidad", description = "Agrega una nueva disponibilidad para un vehículo")
+    @Operation(summary = "Agregar disponibilidad",
+            description = "Agrega una nueva disponibilidad para un vehículo. Si toca o se solapa con otra del mismo motivo se funden en una sola y se devuelve la resultante, con su id y su rango completo; para deshacer solo lo añadido, elimínala indicando 'desde' y 'hasta'")
     @ApiResponse(responseCode = "200", description = "Disponibilidad agregada exitosamente")
+    @ApiResponse(responseCode = "400", description = "Fechas no válidas o vehículo inexistente")
     @PostMapping("/{vehiculoId}")
-    public ResponseEntity<Disponibilidad> agregarDisponibilidad(@PathVariable Long vehiculoId,
+    public ResponseEntity<?> agregarDisponibilidad(@PathVariable Long vehiculoId,
             @RequestBody Disponibilidad disponibilidad) {
-        Disponibilidad nuevaDisponibilidad = disponibilidadService.agregarDisponibilidad(vehiculoId, disponibilidad);
-        return ResponseEntity.ok(nuevaDisponibilidad);
+        try {
+            Disponibilidad nuevaDisponibilidad = disponibilidadService.agregarDisponibilidad(vehiculoId, disponibilidad);
+            return ResponseEntity.ok(nuevaDisponibilidad);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @Operation(summary = "Listar disponibilidades", description = "Obtiene todas las disponibilidades de un vehículo")
@@ -46,12 +56,34 @@ public class DisponibilidadController {
         return ResponseEntity.ok(disponibilidades);
     }
 
-    @Operation(summary = "Eliminar disponibilidad", description = "Elimina una disponibilidad específica")
+    @Operation(summary = "Calendario de ocupación",
+            description = "Devuelve los tramos ocupados (pendiente, bloqueado o confirmado) de un vehículo entre 'desde' y 'desde' más 'meses'. Los días que no aparecen están libres; 'fin' es exclusivo")
+    @ApiResponse(responseCode = "200", description = "Calendario obtenido exitosamente")
+    @ApiResponse(responseCode = "400", description = "'desde' anterior a hoy o 'meses' fuera de rango")
+    @ApiResponse(responseCode = "404", description = "Vehículo no encontrado")
+    @GetMapping("/{vehiculoId}/calendario")
+    public ResponseEntity<?> obtenerCalendario(@PathVariable Long vehiculoId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) Integer meses) {
+        try {
+            return ResponseEntity.ok(disponibilidadService.calendarioVehiculo(vehiculoId, desde, meses));
+        } catch (VehiculoNoEncontradoException e) {
+            return ResponseEntity.notFound().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Eliminar disponibilidad",
+            description = "Elimina una disponibilidad específica. Con 'desde' y 'hasta' solo se libera ese tramo ('hasta' exclusivo) y el resto del bloque se conserva")
     @ApiResponse(responseCode = "204", description = "Disponibilidad eliminada exitosamente")
+    @ApiResponse(responseCode = "400", description = "Tramo no válido o fuera del bloque")
     @ApiResponse(responseCode = "403", description = "No autorizado")
     @ApiResponse(responseCode = "404", description = "Disponibilidad no encontrada")
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> eliminarDisponibilidad(@PathVariable Long id,
+    public ResponseEntity<?> eliminarDisponibilidad(@PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
             @RequestHeader("Authorization") String authHeader) {
         String token = authHeader.substring(7);
         String email = jwtUtil.extraerEmail(token);
@@ -71,7 +103,15 @@ public class DisponibilidadController {
             return ResponseEntity.status(403).build();
         }
 
-        disponibilidadService.eliminarDisponibilidad(id);
+        if (desde == null && hasta == null) {
+            disponibilidadService.eliminarDisponibilidad(id);
+            return ResponseEntity.noContent().build();
+        }
+        try {
+            disponibilidadService.liberarDisponibilidad(id, desde, hasta);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
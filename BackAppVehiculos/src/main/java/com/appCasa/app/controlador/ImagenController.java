@@ -1,7 +1,8 @@
 package com.appCasa.app.controlador;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -9,9 +10,18 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.File;
-import java.net.MalformedURLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @RestController
@@ -19,23 +29,212 @@ import java.util.stream.Collectors;
 @Tag(name = "Imágenes", description = "Gestión de imágenes de vehículos")
 public class ImagenController {
 
-    private final String RUTA_IMAGENES = "../files";
+    // Atributos con los que Tomcat envía el archivo él mismo con sendfile, sin pasar por la JVM.
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+    // Por debajo de este tamaño sale más barato escribir que preparar el sendfile (el mismo umbral que Tomcat).
+    private static final long TAMAÑO_MINIMO_SENDFILE = 48 * 1024;
+    // Los nombres llevan un UUID y no se reescriben nunca: la imagen de un nombre no cambia.
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final Pattern NOMBRE_VALIDO = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9_.-]*");
+    private static final Pattern RANGO = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final int MAXIMO_TIPOS_EN_MEMORIA = 10_000;
 
-    @Operation(summary = "Ver imagen", description = "Obtiene una imagen por su nombre")
+    @Value("${app.imagenes.ruta:../files}")
+    private String rutaImagenes;
+
+    private final Map<String, MediaType> tiposPorNombre = new ConcurrentHashMap<>();
+
+    @Operation(summary = "Ver imagen", description = "Obtiene una imagen por su nombre. Admite peticiones parciales (Range) y revalidación con If-None-Match; la respuesta se puede cachear indefinidamente")
     @ApiResponse(responseCode = "200", description = "Imagen obtenida exitosamente")
+    @ApiResponse(responseCode = "206", description = "Parte de la imagen pedida en la cabecera Range")
+    @ApiResponse(responseCode = "304", description = "La copia del cliente sigue siendo válida")
     @ApiResponse(responseCode = "404", description = "Imagen no encontrada")
+    @ApiResponse(responseCode = "416", description = "Rango fuera del tamaño de la imagen")
     @GetMapping("/{nombreImagen}")
-    public ResponseEntity<Resource> verImagen(@PathVariable String nombreImagen) throws MalformedURLException {
-        Path ruta = Paths.get(RUTA_IMAGENES).resolve(nombreImagen);
-        Resource recurso = new UrlResource(ruta.toUri());
+    public void verImagen(@PathVariable String nombreImagen, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        Path ruta = resolver(nombreImagen);
+        BasicFileAttributes atributos;
+        try {
+            atributos = ruta == null ? null : Files.readAttributes(ruta, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            atributos = null;
+        }
+        if (atributos == null || !atributos.isRegularFile()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
 
-        if (!recurso.exists() || !recurso.isReadable()) {
-            return ResponseEntity.notFound().build();
+        String etag = "\"" + nombreImagen + "\"";
+        long tamaño = atributos.size();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, atributos.lastModifiedTime().toMillis());
+        if (coincideEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
         }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.IMAGE_JPEG);
-        return new ResponseEntity<>(recurso, headers, HttpStatus.OK);
+        long inicio = 0;
+        long longitud = tamaño;
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        String siRango = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rango != null && (siRango == null || siRango.trim().equals(etag))) {
+            long[] tramo = tramo(rango, tamaño);
+            if (tramo == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamaño);
+                return;
+            }
+            if (tramo.length == 2) {
+                inicio = tramo[0];
+                longitud = tramo[1] - tramo[0] + 1;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + tramo[0] + "-" + tramo[1] + "/" + tamaño);
+            }
+        }
+
+        response.setContentType(tipo(nombreImagen, ruta).toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentLengthLong(longitud);
+        if ("HEAD".equals(request.getMethod()) || longitud == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO)) && longitud >= TAMAÑO_MINIMO_SENDFILE) {
+            request.setAttribute(SENDFILE_ARCHIVO, ruta.toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, inicio + longitud);
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            long enviados = 0;
+            while (enviados < longitud) {
+                long tramoEnviado = canal.transferTo(inicio + enviados, longitud - enviados, salida);
+                if (tramoEnviado == 0) {
+                    // El archivo ha encogido desde que se leyó su tamaño.
+                    throw new IOException("La imagen " + nombreImagen + " cambió mientras se enviaba");
+                }
+                enviados += tramoEnviado;
+            }
+        }
+    }
+
+    /** Ruta real de la imagen, o {@code null} si el nombre no es válido o apunta fuera de la carpeta. */
+    private Path resolver(String nombre) throws IOException {
+        if (!NOMBRE_VALIDO.matcher(nombre).matches()) {
+            return null;
+        }
+        try {
+            Path carpeta = Paths.get(rutaImagenes).toRealPath();
+            Path ruta = carpeta.resolve(nombre).toRealPath();
+            return carpeta.equals(ruta.getParent()) ? ruta : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static boolean coincideEtag(String cabecera, String etag) {
+        if (cabecera == null) {
+            return false;
+        }
+        for (String valor : cabecera.split(",")) {
+            String candidato = valor.trim();
+            if (candidato.startsWith("W/")) {
+                candidato = candidato.substring(2);
+            }
+            if (candidato.equals("*") || candidato.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Primer y último byte del rango pedido; un array vacío si hay que
+     * ignorar la cabecera (varios rangos, una sintaxis desconocida o un
+     * último byte anterior al primero) y {@code null} si el rango queda
+     * fuera del archivo.
+     */
+    private static long[] tramo(String cabecera, long tamaño) {
+        Matcher m = RANGO.matcher(cabecera.trim());
+        if (!m.matches() || (m.group(1).isEmpty() && m.group(2).isEmpty())) {
+            return new long[0];
+        }
+        try {
+            if (m.group(1).isEmpty()) {
+                long sufijo = Long.parseLong(m.group(2));
+                if (sufijo == 0 || tamaño == 0) {
+                    return null;
+                }
+                return new long[] { Math.max(0, tamaño - sufijo), tamaño - 1 };
+            }
+            long inicio = Long.parseLong(m.group(1));
+            long fin = m.group(2).isEmpty() ? Long.MAX_VALUE : Long.parseLong(m.group(2));
+            if (fin < inicio) {
+                return new long[0];
+            }
+            if (inicio >= tamaño) {
+                return null;
+            }
+            return new long[] { inicio, Math.min(fin, tamaño - 1) };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * Tipo de la imagen según sus primeros bytes: la extensión la pone quien
+     * la sube y no es de fiar. Como el contenido de un nombre no cambia, el
+     * resultado se recuerda.
+     */
+    private MediaType tipo(String nombre, Path ruta) throws IOException {
+        MediaType tipo = tiposPorNombre.get(nombre);
+        if (tipo != null) {
+            return tipo;
+        }
+        ByteBuffer cabecera = ByteBuffer.allocate(12);
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            while (cabecera.hasRemaining() && canal.read(cabecera) >= 0) {
+                // Se lee hasta llenar la cabecera o llegar al final.
+            }
+        }
+        tipo = detectarTipo(cabecera.array(), cabecera.position());
+        if (tiposPorNombre.size() >= MAXIMO_TIPOS_EN_MEMORIA) {
+            tiposPorNombre.clear();
+        }
+        tiposPorNombre.put(nombre, tipo);
+        return tipo;
+    }
+
+    static MediaType detectarTipo(byte[] b, int n) {
+        if (n >= 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8 && (b[2] & 0xFF) == 0xFF) {
+            return MediaType.IMAGE_JPEG;
+        }
+        if (n >= 8 && (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G') {
+            return MediaType.IMAGE_PNG;
+        }
+        if (n >= 6 && b[0] == 'G' && b[1] == 'I' && b[2] == 'F' && b[3] == '8') {
+            return MediaType.IMAGE_GIF;
+        }
+        if (n >= 12 && b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F'
+                && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P') {
+            return MediaType.parseMediaType("image/webp");
+        }
+        if (n >= 12 && b[4] == 'f' && b[5] == 't' && b[6] == 'y' && b[7] == 'p') {
+            String marca = new String(b, 8, 4, StandardCharsets.US_ASCII);
+            if (marca.startsWith("avi")) {
+                return MediaType.parseMediaType("image/avif");
+            }
+            if (marca.startsWith("hei") || marca.startsWith("mif") || marca.startsWith("hev")) {
+                return MediaType.parseMediaType("image/heic");
+            }
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
     }
 
     @Operation(summary = "Eliminar imagen", description = "Elimina una imagen por su ID")
@@ -43,7 +242,7 @@ public class ImagenController {
     @ApiResponse(responseCode = "404", description = "Imagen no encontrada")
     @DeleteMapping("/{idImagen}")
     public ResponseEntity<?> eliminarImagenPorId(@PathVariable String idImagen) {
-        File carpeta = new File(RUTA_IMAGENES);
+        File carpeta = new File(rutaImagenes);
         File[] archivos = carpeta.listFiles((dir, name) -> name.contains(idImagen));
 
         if (archivos == null || archivos.length == 0) {
@@ -59,7 +258,7 @@ public class ImagenController {
     @ApiResponse(responseCode = "200", description = "Lista de imágenes obtenida exitosamente")
     @GetMapping("/vehiculo/{vehiculoId}")
     public ResponseEntity<List<String>> listarImagenesDeVehiculo(@PathVariable Long vehiculoId) {
-        File carpeta = new File(RUTA_IMAGENES);
+        File carpeta = new File(rutaImagenes);
         File[] archivos = carpeta.listFiles((dir, name) -> name.startsWith("veh_" + vehiculoId + "_"));
 
         if (archivos == null || archivos.length == 0) {
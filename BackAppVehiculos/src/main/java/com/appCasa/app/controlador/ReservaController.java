@@ -1,9 +1,12 @@
 package com.appCasa.app.controlador;
 
+import com.appCasa.app.modelo.PaginaReservas;
+import com.appCasa.app.modelo.ResultadoLote;
 import com.appCasa.app.modelo.Vehiculo;
 import com.appCasa.app.modelo.Reserva;
 import com.appCasa.app.modelo.TipoOperacion;
 import com.appCasa.app.modelo.Usuario;
+import com.appCasa.app.servicio.ConflictoReservaException;
 import com.appCasa.app.servicio.ReservaService;
 import com.appCasa.app.servicio.VehiculoService;
 import com.appCasa.app.servicio.UsuarioService;
@@ -40,6 +43,7 @@ public class ReservaController {
     @ApiResponse(responseCode = "201", description = "Reserva creada exitosamente")
     @ApiResponse(responseCode = "400", description = "Error en los datos de la reserva")
     @ApiResponse(responseCode = "404", description = "Vehículo no encontrado")
+    @ApiResponse(responseCode = "409", description = "El vehículo ya está reservado en esas fechas o para compra")
     @PostMapping
     public ResponseEntity<?> crearReserva(
             @RequestBody Reserva reserva,
@@ -64,6 +68,38 @@ public class ReservaController {
             reserva.setVehiculo(vehiculo);
             Reserva nueva = reservaService.crearReserva(reserva);
             return ResponseEntity.status(201).body(nueva);
+        } catch (ConflictoReservaException ex) {
+            return ResponseEntity.status(409)
+                    .body(Map.of("error", ex.getMessage()));
+        } catch (RuntimeException ex) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Crear reservas en lote", description = "Reserva varios vehículos de alquiler en una sola transacción: se crean todas o ninguna")
+    @ApiResponse(responseCode = "201", description = "Reservas creadas exitosamente")
+    @ApiResponse(responseCode = "400", description = "Lote vacío o demasiado grande")
+    @ApiResponse(responseCode = "409", description = "Alguna reserva no es posible; se indica el motivo de cada una")
+    @PostMapping("/lote")
+    public ResponseEntity<?> crearReservasEnLote(
+            @RequestBody List<Reserva> reservas,
+            @RequestHeader("Authorization") String authHeader) {
+
+        String email = jwtUtil.extraerEmail(authHeader.substring(7));
+        Usuario usuario = usuarioService.buscarPorEmail(email)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+
+        try {
+            ResultadoLote resultado = reservaService.crearReservasEnLote(reservas, usuario.getId());
+            if (!resultado.getConflictos().isEmpty()) {
+                return ResponseEntity.status(409)
+                        .body(Map.of("conflictos", resultado.getConflictos()));
+            }
+            return ResponseEntity.status(201).body(resultado.getReservas());
+        } catch (ConflictoReservaException ex) {
+            return ResponseEntity.status(409)
+                    .body(Map.of("error", ex.getMessage()));
         } catch (RuntimeException ex) {
             return ResponseEntity.badRequest()
                     .body(Map.of("error", ex.getMessage()));
@@ -117,32 +153,58 @@ public class ReservaController {
         return ResponseEntity.ok(reservaActualizada);
     }
 
-    @Operation(summary = "Obtener reservas como propietario", description = "Lista las reservas de los vehículos del usuario autenticado (propietario)")
+    @Operation(summary = "Obtener reservas como propietario", description = "Lista las reservas de los vehículos del usuario autenticado (propietario), de la más reciente a la más antigua. El cursor de la siguiente página se devuelve en la cabecera X-Siguiente-Cursor")
     @ApiResponse(responseCode = "200", description = "Lista de reservas obtenida exitosamente")
+    @ApiResponse(responseCode = "400", description = "Cursor de paginación no válido")
     @GetMapping("/dueño")
-    public ResponseEntity<List<Reserva>> obtenerReservasDelDueño(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> obtenerReservasDelDueño(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(required = false) Boolean confirmado,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer tamaño) {
         String token = authHeader.substring(7);
         String email = jwtUtil.extraerEmail(token);
 
         Usuario usuario = usuarioService.buscarPorEmail(email)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
-        List<Reserva> reservas = reservaService.obtenerReservasDeVehiculosDelDueño(usuario.getId());
-        return ResponseEntity.ok(reservas);
+        try {
+            return respuestaPaginada(reservaService.obtenerReservasDeVehiculosDelDueño(
+                    usuario.getId(), confirmado, cursor, tamaño));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
-    @Operation(summary = "Obtener reservas como usuario", description = "Lista las reservas realizadas por el usuario autenticado")
+    @Operation(summary = "Obtener reservas como usuario", description = "Lista las reservas realizadas por el usuario autenticado, de la más reciente a la más antigua. El cursor de la siguiente página se devuelve en la cabecera X-Siguiente-Cursor")
     @ApiResponse(responseCode = "200", description = "Lista de reservas obtenida exitosamente")
+    @ApiResponse(responseCode = "400", description = "Cursor de paginación no válido")
     @GetMapping("/usuario")
-    public ResponseEntity<List<Reserva>> obtenerReservasDeUsuario(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> obtenerReservasDeUsuario(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(required = false) Boolean confirmado,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer tamaño) {
         String token = authHeader.substring(7);
         String email = jwtUtil.extraerEmail(token);
 
         Usuario usuario = usuarioService.buscarPorEmail(email)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
-        List<Reserva> reservas = reservaService.obtenerReservasDeUsuario(usuario.getId());
-        return ResponseEntity.ok(reservas);
+        try {
+            return respuestaPaginada(reservaService.obtenerReservasDeUsuario(
+                    usuario.getId(), confirmado, cursor, tamaño));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<List<Reserva>> respuestaPaginada(PaginaReservas pagina) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+        if (pagina.getSiguienteCursor() != null) {
+            respuesta.header("X-Siguiente-Cursor", pagina.getSiguienteCursor());
+        }
+        return respuesta.body(pagina.getReservas());
     }
 
     @Operation(summary = "Cancelar reserva", description = "Cancela una reserva específica")
@@ -1,6 +1,12 @@
 package com.appCasa.app.controlador;
 
+import com.appCasa.app.modelo.CampoSugerencia;
+import com.appCasa.app.modelo.FacetasVehiculos;
+import com.appCasa.app.modelo.FiltroVehiculos;
 import com.appCasa.app.modelo.ImagenInfo;
+import com.appCasa.app.modelo.OrdenVehiculos;
+import com.appCasa.app.modelo.PaginaVehiculos;
+import com.appCasa.app.modelo.Sugerencia;
 import com.appCasa.app.modelo.Vehiculo;
 import com.appCasa.app.modelo.TipoOperacion;
 import com.appCasa.app.modelo.Usuario;
@@ -12,6 +18,8 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -20,6 +28,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +57,9 @@ public class VehiculoController {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Value("${app.imagenes.ruta:../files}")
+    private String rutaImagenes;
+
     @Operation(summary = "Buscar por ubicación", description = "Busca vehículos por ubicación")
     @ApiResponse(responseCode = "200", description = "Lista de vehículos obtenida exitosamente")
     @GetMapping("/ubicacion/{ubicacion}")
@@ -143,10 +155,11 @@ public class VehiculoController {
         return ResponseEntity.ok(vehiculoService.listarVehiculos());
     }
 
-    @Operation(summary = "Buscar con filtros", description = "Busca vehículos aplicando múltiples filtros")
+    @Operation(summary = "Buscar con filtros", description = "Busca vehículos aplicando múltiples filtros, paginados por cursor. El cursor de la siguiente página se devuelve en la cabecera X-Siguiente-Cursor. Con fechaInicio y fechaFin solo se devuelven vehículos de alquiler libres en ese rango")
     @ApiResponse(responseCode = "200", description = "Lista de vehículos obtenida exitosamente")
+    @ApiResponse(responseCode = "400", description = "Cursor de paginación o rango de fechas no válido")
     @GetMapping("/buscar")
-    public ResponseEntity<List<Vehiculo>> buscarConFiltros(
+    public ResponseEntity<?> buscarConFiltros(
             @RequestParam(required = false) String ubicacion,
             @RequestParam(required = false) Double precioMin,
             @RequestParam(required = false) Double precioMax,
@@ -156,12 +169,61 @@ public class VehiculoController {
             @RequestParam(required = false) Integer capacidadMin,
             @RequestParam(required = false) String marca,
             @RequestParam(required = false) String modelo,
-            @RequestParam(required = false) TipoOperacion tipo) {
+            @RequestParam(required = false) TipoOperacion tipo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) OrdenVehiculos orden,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer tamaño) {
+
+        FiltroVehiculos filtro = new FiltroVehiculos(ubicacion, precioMin, precioMax, añoMin, añoMax,
+                kilometrajeMax, capacidadMin, marca, modelo, tipo, fechaInicio, fechaFin);
+        try {
+            PaginaVehiculos pagina = vehiculoService.buscarConFiltros(filtro, orden, cursor, tamaño);
+            ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+            if (pagina.getSiguienteCursor() != null) {
+                respuesta.header("X-Siguiente-Cursor", pagina.getSiguienteCursor());
+            }
+            return respuesta.body(pagina.getVehiculos());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Facetas de búsqueda", description = "Cuenta los vehículos que cumplen los filtros por marca, tipo de operación y tramos de año, kilometraje y precio")
+    @ApiResponse(responseCode = "200", description = "Facetas calculadas exitosamente")
+    @GetMapping("/buscar/facetas")
+    public ResponseEntity<?> facetas(
+            @RequestParam(required = false) String ubicacion,
+            @RequestParam(required = false) Double precioMin,
+            @RequestParam(required = false) Double precioMax,
+            @RequestParam(required = false) Integer añoMin,
+            @RequestParam(required = false) Integer añoMax,
+            @RequestParam(required = false) Integer kilometrajeMax,
+            @RequestParam(required = false) Integer capacidadMin,
+            @RequestParam(required = false) String marca,
+            @RequestParam(required = false) String modelo,
+            @RequestParam(required = false) TipoOperacion tipo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+
+        FiltroVehiculos filtro = new FiltroVehiculos(ubicacion, precioMin, precioMax, añoMin, añoMax,
+                kilometrajeMax, capacidadMin, marca, modelo, tipo, fechaInicio, fechaFin);
+        try {
+            return ResponseEntity.ok(vehiculoService.calcularFacetas(filtro));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-        List<Vehiculo> vehiculos = vehiculoService.buscarConFiltros(
-        ubicacion, precioMin, precioMax, añoMin, añoMax,
-        kilometrajeMax, capacidadMin, marca, modelo, tipo);
-    return ResponseEntity.ok(vehiculos);
+    @Operation(summary = "Sugerencias de búsqueda", description = "Autocompleta marca, modelo o ubicación a partir de un prefijo, ordenando por número de anuncios")
+    @ApiResponse(responseCode = "200", description = "Sugerencias obtenidas exitosamente")
+    @GetMapping("/sugerencias")
+    public ResponseEntity<List<Sugerencia>> sugerencias(
+            @RequestParam CampoSugerencia campo,
+            @RequestParam(required = false) String prefijo,
+            @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(vehiculoService.sugerir(campo, prefijo, limite));
     }
 
     @Operation(summary = "Subir imágenes", description = "Sube imágenes para un vehículo específico")
@@ -191,7 +253,6 @@ public class VehiculoController {
                         .body(Map.of("error", "No tienes permisos para subir imágenes a este vehículo"));
             }
 
-            String carpetaDestino = "../files";
             List<String> imagenesUrls = new ArrayList<>();
 
             for (MultipartFile imagen : imagenes) {
@@ -206,7 +267,7 @@ public class VehiculoController {
                 String uniqueId = UUID.randomUUID().toString();
                 String nombreArchivo = "veh_" + id + "_" + uniqueId + "." + extension;
 
-                Path rutaDestino = Paths.get(carpetaDestino, nombreArchivo);
+                Path rutaDestino = Paths.get(rutaImagenes, nombreArchivo);
                 Files.createDirectories(rutaDestino.getParent());
                 imagen.transferTo(rutaDestino);
 
@@ -0,0 +1,95 @@
+package com.appCasa.app.indice;
+
+import com.appCasa.app.modelo.FacetasVehiculos;
+import com.appCasa.app.modelo.TipoOperacion;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cuenta en una sola pasada los vehículos de un resultado por marca, tipo de
+ * operación y tramos de año, kilometraje y precio.
+ */
+public class AcumuladorFacetas {
+
+    private static final int AÑOS_POR_TRAMO = 5;
+    private static final int[] TRAMOS_KILOMETRAJE = { 0, 25000, 50000, 100000, 150000, 200000 };
+    private static final int[] TRAMOS_PRECIO_VENTA = { 0, 5000, 10000, 20000, 30000, 50000 };
+    private static final int[] TRAMOS_PRECIO_ALQUILER = { 0, 30, 50, 80, 120 };
+
+    private final Map<String, Long> marcas = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Long> tiposOperacion = new LinkedHashMap<>();
+    private final Map<String, Long> años = new TreeMap<>();
+    private final long[] kilometrajes = new long[TRAMOS_KILOMETRAJE.length];
+    private final long[] preciosVenta = new long[TRAMOS_PRECIO_VENTA.length];
+    private final long[] preciosAlquiler = new long[TRAMOS_PRECIO_ALQUILER.length];
+    private long total;
+
+    public AcumuladorFacetas() {
+        for (TipoOperacion tipo : TipoOperacion.values()) {
+            tiposOperacion.put(tipo.name(), 0L);
+        }
+    }
+
+    public void añadir(String marca, TipoOperacion tipo, int año, int kilometraje,
+                       Double precioTotal, Double precioPorDia) {
+        total++;
+        añadirMarca(marca, 1);
+        añadirTipo(tipo, 1);
+        añadirSinMarcaNiTipo(año, kilometraje,
+                precioTotal != null ? precioTotal : Double.NaN,
+                precioPorDia != null ? precioPorDia : Double.NaN);
+    }
+
+    void añadirMarca(String marca, long cantidad) {
+        if (cantidad > 0) {
+            marcas.merge(marca, cantidad, Long::sum);
+        }
+    }
+
+    void añadirTipo(TipoOperacion tipo, long cantidad) {
+        tiposOperacion.merge(tipo.name(), cantidad, Long::sum);
+    }
+
+    void añadirSinMarcaNiTipo(int año, int kilometraje, double precioTotal, double precioPorDia) {
+        int inicioTramo = Math.floorDiv(año, AÑOS_POR_TRAMO) * AÑOS_POR_TRAMO;
+        años.merge(inicioTramo + "-" + (inicioTramo + AÑOS_POR_TRAMO - 1), 1L, Long::sum);
+        kilometrajes[tramo(TRAMOS_KILOMETRAJE, kilometraje)]++;
+        if (!Double.isNaN(precioTotal)) {
+            preciosVenta[tramo(TRAMOS_PRECIO_VENTA, precioTotal)]++;
+        } else if (!Double.isNaN(precioPorDia)) {
+            preciosAlquiler[tramo(TRAMOS_PRECIO_ALQUILER, precioPorDia)]++;
+        }
+    }
+
+    void contarTotal() {
+        total++;
+    }
+
+    public FacetasVehiculos resultado() {
+        return new FacetasVehiculos(total, marcas, tiposOperacion, años,
+                etiquetar(TRAMOS_KILOMETRAJE, kilometrajes),
+                etiquetar(TRAMOS_PRECIO_VENTA, preciosVenta),
+                etiquetar(TRAMOS_PRECIO_ALQUILER, preciosAlquiler));
+    }
+
+    private static int tramo(int[] limites, double valor) {
+        int i = limites.length - 1;
+        while (i > 0 && valor < limites[i]) {
+            i--;
+        }
+        return i;
+    }
+
+    private static Map<String, Long> etiquetar(int[] limites, long[] cuentas) {
+        Map<String, Long> tramos = new LinkedHashMap<>();
+        for (int i = 0; i < limites.length; i++) {
+            String etiqueta = i + 1 < limites.length
+                    ? limites[i] + "-" + limites[i + 1]
+                    : limites[i] + "+";
+            tramos.put(etiqueta, cuentas[i]);
+        }
+        return tramos;
+    }
+}
@@ -0,0 +1,104 @@
+package com.appCasa.app.indice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tramos ocupados de un vehículo (reservas y bloqueos), en días desde la época
+ * y como intervalos semiabiertos [inicio, fin). Se guardan ordenados por inicio
+ * junto al máximo acumulado de los finales, de modo que saber si un rango
+ * solapa con alguno es una búsqueda binaria. Las lecturas usan una instantánea
+ * inmutable y no bloquean; las escrituras la sustituyen entera.
+ */
+public class CalendarioOcupacion {
+
+    public enum Origen {
+        RESERVA,
+        BLOQUE
+    }
+
+    public record Tramo(long inicio, long fin, Origen origen, long referencia, String motivo) {
+    }
+
+    private record Instantanea(Tramo[] tramos, long[] finMaximo) {
+    }
+
+    private static final Comparator<Tramo> POR_INICIO = Comparator.comparingLong(Tramo::inicio);
+
+    private volatile Instantanea instantanea;
+
+    public CalendarioOcupacion(Collection<Tramo> tramos) {
+        instantanea = construir(new ArrayList<>(tramos));
+    }
+
+    public boolean haySolape(long inicio, long fin) {
+        Instantanea actual = instantanea;
+        int anteriores = empiezanAntesDe(actual.tramos(), fin);
+        return anteriores > 0 && actual.finMaximo()[anteriores - 1] > inicio;
+    }
+
+    public List<Tramo> tramos() {
+        return List.of(instantanea.tramos());
+    }
+
+    public List<Tramo> tramosEntre(long inicio, long fin) {
+        Tramo[] tramos = instantanea.tramos();
+        int anteriores = empiezanAntesDe(tramos, fin);
+        List<Tramo> resultado = new ArrayList<>();
+        for (int i = 0; i < anteriores; i++) {
+            if (tramos[i].fin() > inicio) {
+                resultado.add(tramos[i]);
+            }
+        }
+        return resultado;
+    }
+
+    public synchronized void poner(Tramo tramo) {
+        List<Tramo> tramos = sin(tramo.origen(), tramo.referencia());
+        tramos.add(tramo);
+        instantanea = construir(tramos);
+    }
+
+    public synchronized void quitar(Origen origen, long referencia) {
+        instantanea = construir(sin(origen, referencia));
+    }
+
+    private List<Tramo> sin(Origen origen, long referencia) {
+        List<Tramo> tramos = new ArrayList<>(instantanea.tramos().length + 1);
+        for (Tramo tramo : instantanea.tramos()) {
+            if (tramo.origen() != origen || tramo.referencia() != referencia) {
+                tramos.add(tramo);
+            }
+        }
+        return tramos;
+    }
+
+    private static Instantanea construir(List<Tramo> tramos) {
+        Tramo[] ordenados = tramos.toArray(new Tramo[0]);
+        Arrays.sort(ordenados, POR_INICIO);
+        long[] finMaximo = new long[ordenados.length];
+        long maximo = Long.MIN_VALUE;
+        for (int i = 0; i < ordenados.length; i++) {
+            maximo = Math.max(maximo, ordenados[i].fin());
+            finMaximo[i] = maximo;
+        }
+        return new Instantanea(ordenados, finMaximo);
+    }
+
+    private static int empiezanAntesDe(Tramo[] tramos, long dia) {
+        int bajo = 0;
+        int alto = tramos.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (tramos[medio].inicio() < dia) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+}
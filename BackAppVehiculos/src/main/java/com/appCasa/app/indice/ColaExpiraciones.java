@@ -0,0 +1,75 @@
+package com.appCasa.app.indice;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Reservas de compra pendientes ordenadas por fecha de expiración. Sacar las
+ * vencidas solo recorre el principio del árbol, así que el coste depende de
+ * cuántas vencen y no de cuántas hay.
+ */
+@Component
+public class ColaExpiraciones {
+
+    private final TreeMap<LocalDate, Set<Long>> porFecha = new TreeMap<>();
+    private final Map<Long, LocalDate> fechas = new HashMap<>();
+
+    public synchronized void programar(Long reservaId, LocalDate fechaExpiracion) {
+        cancelar(reservaId);
+        porFecha.computeIfAbsent(fechaExpiracion, f -> new LinkedHashSet<>()).add(reservaId);
+        fechas.put(reservaId, fechaExpiracion);
+    }
+
+    public synchronized void cancelar(Long reservaId) {
+        LocalDate fecha = fechas.remove(reservaId);
+        if (fecha == null) {
+            return;
+        }
+        Set<Long> reservas = porFecha.get(fecha);
+        reservas.remove(reservaId);
+        if (reservas.isEmpty()) {
+            porFecha.remove(fecha);
+        }
+    }
+
+    /**
+     * Hasta {@code limite} reservas que expiraron antes de {@code hoy}, las más
+     * antiguas primero. No las quita de la cola: eso se hace al confirmar que
+     * se han liberado.
+     */
+    public synchronized List<Long> vencidas(LocalDate hoy, int limite) {
+        List<Long> resultado = new ArrayList<>();
+        for (Set<Long> reservas : porFecha.headMap(hoy, false).values()) {
+            Iterator<Long> it = reservas.iterator();
+            while (it.hasNext() && resultado.size() < limite) {
+                resultado.add(it.next());
+            }
+            if (resultado.size() == limite) {
+                break;
+            }
+        }
+        return resultado;
+    }
+
+    public synchronized boolean contiene(Long reservaId) {
+        return fechas.containsKey(reservaId);
+    }
+
+    public synchronized void vaciar() {
+        porFecha.clear();
+        fechas.clear();
+    }
+
+    public synchronized int tamaño() {
+        return fechas.size();
+    }
+}
@@ -0,0 +1,242 @@
+package com.appCasa.app.indice;
+
+import com.appCasa.app.modelo.Alerta;
+import com.appCasa.app.modelo.ResumenVehiculo;
+import com.appCasa.app.modelo.TipoOperacion;
+import com.appCasa.app.modelo.Vehiculo;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice inverso de las alertas activas: en lugar de probar cada alerta
+ * contra un vehículo nuevo, se buscan las alertas que podrían aceptarlo.
+ * Las alertas se reparten en cubetas por tipo de operación y marca (cada una
+ * puede faltar), y dentro de cada cubeta se ordenan por el primer umbral que
+ * tengan: precio máximo, kilometraje máximo, año máximo o año mínimo. Un
+ * vehículo solo mira cuatro cubetas y, en cada una, las alertas cuyo umbral
+ * principal ya cumple; el resto de condiciones se comprueban después.
+ *
+ * <p>Limitación: cada alerta se archiva solo bajo su primer umbral, que no
+ * tiene por qué ser el más selectivo. Una alerta con precio máximo alto y
+ * kilometraje máximo bajo aparece como candidata para casi cualquier vehículo
+ * y se descarta luego en {@code acepta}, así que el coste crece con las
+ * alertas de umbrales holgados de cada cubeta y no solo con las que coinciden
+ * (con un millón de alertas aleatorias, unos 20 ms por vehículo).
+ */
+@Component
+public class IndiceAlertas {
+
+    private record Criterio(long id, String ubicacion, String marca, TipoOperacion tipoOperacion,
+                            Double precioMax, Integer kilometrajeMax, Integer añoMin, Integer añoMax) {
+
+        static Criterio de(Alerta alerta) {
+            return new Criterio(alerta.getId(), normalizar(alerta.getUbicacion()), normalizar(alerta.getMarca()),
+                    alerta.getTipoOperacion(), alerta.getPrecioMax(), alerta.getKilometrajeMax(),
+                    alerta.getAñoMin(), alerta.getAñoMax());
+        }
+
+        boolean acepta(ResumenVehiculo v) {
+            return (tipoOperacion == null || tipoOperacion == v.getTipoOperacion())
+                    && (marca == null || marca.equals(normalizar(v.getMarca())))
+                    && (ubicacion == null || (v.getUbicacion() != null
+                        && v.getUbicacion().toLowerCase(Locale.ROOT).contains(ubicacion)))
+                    && (precioMax == null || (v.getPrecioTotal() != null && v.getPrecioTotal() <= precioMax))
+                    && (kilometrajeMax == null || (v.getKilometraje() != null && v.getKilometraje() <= kilometrajeMax))
+                    && (añoMin == null || (v.getAño() != null && v.getAño() >= añoMin))
+                    && (añoMax == null || (v.getAño() != null && v.getAño() <= añoMax));
+        }
+    }
+
+    private record ClaveCubeta(TipoOperacion tipoOperacion, String marca) {
+    }
+
+    private static final class Cubeta {
+        private final TreeMap<Double, Map<Long, Criterio>> porPrecioMax = new TreeMap<>();
+        private final TreeMap<Integer, Map<Long, Criterio>> porKilometrajeMax = new TreeMap<>();
+        private final TreeMap<Integer, Map<Long, Criterio>> porAñoMax = new TreeMap<>();
+        private final TreeMap<Integer, Map<Long, Criterio>> porAñoMin = new TreeMap<>();
+        private final Map<Long, Criterio> sinUmbral = new HashMap<>();
+        private int tamaño;
+
+        void poner(Criterio c) {
+            if (c.precioMax() != null) {
+                porPrecioMax.computeIfAbsent(c.precioMax(), k -> new HashMap<>()).put(c.id(), c);
+            } else if (c.kilometrajeMax() != null) {
+                porKilometrajeMax.computeIfAbsent(c.kilometrajeMax(), k -> new HashMap<>()).put(c.id(), c);
+            } else if (c.añoMax() != null) {
+                porAñoMax.computeIfAbsent(c.añoMax(), k -> new HashMap<>()).put(c.id(), c);
+            } else if (c.añoMin() != null) {
+                porAñoMin.computeIfAbsent(c.añoMin(), k -> new HashMap<>()).put(c.id(), c);
+            } else {
+                sinUmbral.put(c.id(), c);
+            }
+            tamaño++;
+        }
+
+        void quitar(Criterio c) {
+            if (c.precioMax() != null) {
+                quitar(porPrecioMax, c.precioMax(), c.id());
+            } else if (c.kilometrajeMax() != null) {
+                quitar(porKilometrajeMax, c.kilometrajeMax(), c.id());
+            } else if (c.añoMax() != null) {
+                quitar(porAñoMax, c.añoMax(), c.id());
+            } else if (c.añoMin() != null) {
+                quitar(porAñoMin, c.añoMin(), c.id());
+            } else {
+                sinUmbral.remove(c.id());
+            }
+            tamaño--;
+        }
+
+        private static <K> void quitar(TreeMap<K, Map<Long, Criterio>> arbol, K clave, long id) {
+            Map<Long, Criterio> alertas = arbol.get(clave);
+            alertas.remove(id);
+            if (alertas.isEmpty()) {
+                arbol.remove(clave);
+            }
+        }
+
+        void candidatas(ResumenVehiculo v, List<Long> resultado) {
+            if (v.getPrecioTotal() != null) {
+                comprobar(porPrecioMax.tailMap(v.getPrecioTotal(), true), v, resultado);
+            }
+            if (v.getKilometraje() != null) {
+                comprobar(porKilometrajeMax.tailMap(v.getKilometraje(), true), v, resultado);
+            }
+            if (v.getAño() != null) {
+                comprobar(porAñoMax.tailMap(v.getAño(), true), v, resultado);
+                comprobar(porAñoMin.headMap(v.getAño(), true), v, resultado);
+            }
+            for (Criterio c : sinUmbral.values()) {
+                if (c.acepta(v)) {
+                    resultado.add(c.id());
+                }
+            }
+        }
+
+        private static void comprobar(NavigableMap<?, Map<Long, Criterio>> tramo, ResumenVehiculo v, List<Long> resultado) {
+            for (Map<Long, Criterio> alertas : tramo.values()) {
+                for (Criterio c : alertas.values()) {
+                    if (c.acepta(v)) {
+                        resultado.add(c.id());
+                    }
+                }
+            }
+        }
+    }
+
+    private final Map<ClaveCubeta, Cubeta> cubetas = new HashMap<>();
+    private final Map<Long, Criterio> alertas = new HashMap<>();
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    public void cargar(Collection<Alerta> activas) {
+        cerrojo.writeLock().lock();
+        try {
+            cubetas.clear();
+            alertas.clear();
+            activas.forEach(this::ponerSinBloquear);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    public void poner(Alerta alerta) {
+        cerrojo.writeLock().lock();
+        try {
+            quitarSinBloquear(alerta.getId());
+            if (!Boolean.FALSE.equals(alerta.getActiva())) {
+                ponerSinBloquear(alerta);
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    public void quitar(Long alertaId) {
+        cerrojo.writeLock().lock();
+        try {
+            quitarSinBloquear(alertaId);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /** Comprueba una sola alerta, sin pasar por el índice. */
+    public static boolean acepta(Alerta alerta, ResumenVehiculo vehiculo) {
+        return Criterio.de(alerta).acepta(vehiculo);
+    }
+
+    public List<Long> coincidencias(Vehiculo vehiculo) {
+        return coincidencias(ResumenVehiculo.de(vehiculo));
+    }
+
+    /** Ids de las alertas activas que aceptan el vehículo. */
+    public List<Long> coincidencias(ResumenVehiculo vehiculo) {
+        List<Long> resultado = new ArrayList<>();
+        String marca = normalizar(vehiculo.getMarca());
+        cerrojo.readLock().lock();
+        try {
+            Set<ClaveCubeta> claves = new LinkedHashSet<>(List.of(
+                    new ClaveCubeta(vehiculo.getTipoOperacion(), marca),
+                    new ClaveCubeta(vehiculo.getTipoOperacion(), null),
+                    new ClaveCubeta(null, marca),
+                    new ClaveCubeta(null, null)));
+            for (ClaveCubeta clave : claves) {
+                Cubeta cubeta = cubetas.get(clave);
+                if (cubeta != null) {
+                    cubeta.candidatas(vehiculo, resultado);
+                }
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        return resultado;
+    }
+
+    public int tamaño() {
+        cerrojo.readLock().lock();
+        try {
+            return alertas.size();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    private void ponerSinBloquear(Alerta alerta) {
+        Criterio criterio = Criterio.de(alerta);
+        alertas.put(criterio.id(), criterio);
+        cubetas.computeIfAbsent(new ClaveCubeta(criterio.tipoOperacion(), criterio.marca()), k -> new Cubeta())
+                .poner(criterio);
+    }
+
+    private void quitarSinBloquear(Long alertaId) {
+        Criterio criterio = alertas.remove(alertaId);
+        if (criterio == null) {
+            return;
+        }
+        ClaveCubeta clave = new ClaveCubeta(criterio.tipoOperacion(), criterio.marca());
+        Cubeta cubeta = cubetas.get(clave);
+        cubeta.quitar(criterio);
+        if (cubeta.tamaño == 0) {
+            cubetas.remove(clave);
+        }
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return null;
+        }
+        return texto.trim().toLowerCase(Locale.ROOT);
+    }
+}
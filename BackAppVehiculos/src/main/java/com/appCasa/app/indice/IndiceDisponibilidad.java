@@ -0,0 +1,83 @@
+package com.appCasa.app.indice;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Calendarios de ocupación por vehículo. Se cargan de la base de datos la
+ * primera vez que se consultan y después se mantienen con cada cambio. La
+ * carga se hace fuera del mapa, para no bloquear a otros vehículos mientras
+ * se lee la base de datos; cada cambio anota su número de orden antes de
+ * aplicarse, y una carga que empezó antes que un cambio sobre su vehículo
+ * se descarta y se repite.
+ */
+@Component
+public class IndiceDisponibilidad {
+
+    private static final int INTENTOS_CARGA = 3;
+
+    private final ConcurrentHashMap<Long, CalendarioOcupacion> calendarios = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> ultimoCambio = new ConcurrentHashMap<>();
+    private final AtomicLong cambios = new AtomicLong();
+    private volatile long ultimoVaciado;
+
+    public CalendarioOcupacion obtener(Long vehiculoId, Function<Long, CalendarioOcupacion> cargador) {
+        CalendarioOcupacion calendario = calendarios.get(vehiculoId);
+        if (calendario != null) {
+            return calendario;
+        }
+        CalendarioOcupacion cargado = null;
+        for (int intento = 0; intento < INTENTOS_CARGA; intento++) {
+            long comienzo = cambios.get();
+            cargado = cargador.apply(vehiculoId);
+            CalendarioOcupacion previo = calendarios.putIfAbsent(vehiculoId, cargado);
+            if (previo != null) {
+                return previo;
+            }
+            if (Math.max(ultimoCambio.getOrDefault(vehiculoId, 0L), ultimoVaciado) <= comienzo) {
+                return cargado;
+            }
+            // Un cambio llegó durante la carga y puede no estar en lo leído.
+            calendarios.remove(vehiculoId, cargado);
+        }
+        // Con cambios continuos se devuelve la última lectura sin guardarla.
+        return cargado;
+    }
+
+    public void poner(Long vehiculoId, CalendarioOcupacion.Tramo tramo) {
+        anotarCambio(vehiculoId);
+        calendarios.computeIfPresent(vehiculoId, (id, calendario) -> {
+            calendario.poner(tramo);
+            return calendario;
+        });
+    }
+
+    public void quitar(Long vehiculoId, CalendarioOcupacion.Origen origen, long referencia) {
+        anotarCambio(vehiculoId);
+        calendarios.computeIfPresent(vehiculoId, (id, calendario) -> {
+            calendario.quitar(origen, referencia);
+            return calendario;
+        });
+    }
+
+    public void invalidar(Long vehiculoId) {
+        anotarCambio(vehiculoId);
+        calendarios.remove(vehiculoId);
+    }
+
+    public void vaciar() {
+        ultimoVaciado = cambios.incrementAndGet();
+        calendarios.clear();
+    }
+
+    public int vehiculosCargados() {
+        return calendarios.size();
+    }
+
+    private void anotarCambio(Long vehiculoId) {
+        ultimoCambio.put(vehiculoId, cambios.incrementAndGet());
+    }
+}
@@ -0,0 +1,63 @@
+package com.appCasa.app.indice;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Listas de posiciones por trigrama de un campo de texto. Una búsqueda por
+ * subcadena solo puede coincidir en las posiciones que contienen todos los
+ * trigramas de la consulta; el llamador comprueba después la subcadena exacta.
+ * No es seguro para hilos: lo protege el cerrojo de {@link IndiceVehiculos}.
+ */
+class IndiceTrigramas {
+
+    static final int LONGITUD = 3;
+
+    private final Map<Long, BitSet> posiciones = new HashMap<>();
+
+    void añadir(int pos, String texto) {
+        for (int i = 0; i + LONGITUD <= texto.length(); i++) {
+            posiciones.computeIfAbsent(trigrama(texto, i), t -> new BitSet()).set(pos);
+        }
+    }
+
+    void quitar(int pos, String texto) {
+        for (int i = 0; i + LONGITUD <= texto.length(); i++) {
+            long clave = trigrama(texto, i);
+            BitSet bits = posiciones.get(clave);
+            if (bits != null) {
+                bits.clear(pos);
+                if (bits.isEmpty()) {
+                    posiciones.remove(clave);
+                }
+            }
+        }
+    }
+
+    void vaciar() {
+        posiciones.clear();
+    }
+
+    /**
+     * Restringe {@code candidatos} a las posiciones que contienen todos los
+     * trigramas de la consulta. Las consultas más cortas que un trigrama no
+     * restringen nada.
+     */
+    void restringir(BitSet candidatos, String consulta) {
+        for (int i = 0; i + LONGITUD <= consulta.length() && !candidatos.isEmpty(); i++) {
+            BitSet bits = posiciones.get(trigrama(consulta, i));
+            if (bits == null) {
+                candidatos.clear();
+            } else {
+                candidatos.and(bits);
+            }
+        }
+    }
+
+    private static long trigrama(String texto, int inicio) {
+        return ((long) texto.charAt(inicio) << 32)
+                | ((long) texto.charAt(inicio + 1) << 16)
+                | texto.charAt(inicio + 2);
+    }
+}
@@ -0,0 +1,407 @@
+package com.appCasa.app.indice;
+
+import com.appCasa.app.modelo.CampoSugerencia;
+import com.appCasa.app.modelo.CursorPaginacion;
+import com.appCasa.app.modelo.FacetasVehiculos;
+import com.appCasa.app.modelo.FiltroVehiculos;
+import com.appCasa.app.modelo.OrdenVehiculos;
+import com.appCasa.app.modelo.ResumenVehiculo;
+import com.appCasa.app.modelo.Sugerencia;
+import com.appCasa.app.modelo.TipoOperacion;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Catálogo en memoria de los vehículos validados, guardado por columnas en
+ * arrays primitivos. Cada vehículo ocupa una posición fija; los filtros se
+ * resuelven con mapas de bits sobre esas posiciones.
+ */
+@Component
+public class IndiceVehiculos {
+
+    public static final int MAXIMO_SUGERENCIAS = TrieSugerencias.MAXIMO_SUGERENCIAS;
+    private static final int CAPACIDAD_INICIAL = 1024;
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> posiciones = new HashMap<>();
+    private final Deque<Integer> posicionesLibres = new ArrayDeque<>();
+    private final BitSet activos = new BitSet();
+    private final BitSet[] porTipo = new BitSet[TipoOperacion.values().length];
+    private final Map<String, BitSet> porMarca = new HashMap<>();
+    private final Map<String, String> nombresMarca = new HashMap<>();
+    private final IndiceTrigramas trigramasUbicacion = new IndiceTrigramas();
+    private final IndiceTrigramas trigramasMarca = new IndiceTrigramas();
+    private final IndiceTrigramas trigramasModelo = new IndiceTrigramas();
+    private final TrieSugerencias sugerenciasUbicacion = new TrieSugerencias();
+    private final TrieSugerencias sugerenciasMarca = new TrieSugerencias();
+    private final TrieSugerencias sugerenciasModelo = new TrieSugerencias();
+
+    private long[] ids = new long[CAPACIDAD_INICIAL];
+    private int[] años = new int[CAPACIDAD_INICIAL];
+    private int[] kilometrajes = new int[CAPACIDAD_INICIAL];
+    private int[] capacidades = new int[CAPACIDAD_INICIAL];
+    private double[] preciosTotales = new double[CAPACIDAD_INICIAL];
+    private double[] preciosPorDia = new double[CAPACIDAD_INICIAL];
+    private byte[] tipos = new byte[CAPACIDAD_INICIAL];
+    private String[] ubicaciones = new String[CAPACIDAD_INICIAL];
+    private String[] marcas = new String[CAPACIDAD_INICIAL];
+    private String[] modelos = new String[CAPACIDAD_INICIAL];
+    private int ocupadas;
+
+    private volatile boolean listo;
+
+    public IndiceVehiculos() {
+        for (int i = 0; i < porTipo.length; i++) {
+            porTipo[i] = new BitSet();
+        }
+    }
+
+    public boolean isListo() {
+        return listo;
+    }
+
+    public void marcarListo() {
+        listo = true;
+    }
+
+    public int tamaño() {
+        cerrojo.readLock().lock();
+        try {
+            return posiciones.size();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    public void vaciar() {
+        cerrojo.writeLock().lock();
+        try {
+            listo = false;
+            posiciones.clear();
+            posicionesLibres.clear();
+            activos.clear();
+            for (BitSet bits : porTipo) {
+                bits.clear();
+            }
+            porMarca.clear();
+            nombresMarca.clear();
+            trigramasUbicacion.vaciar();
+            trigramasMarca.vaciar();
+            trigramasModelo.vaciar();
+            sugerenciasUbicacion.vaciar();
+            sugerenciasMarca.vaciar();
+            sugerenciasModelo.vaciar();
+            Arrays.fill(ubicaciones, null);
+            Arrays.fill(marcas, null);
+            Arrays.fill(modelos, null);
+            ocupadas = 0;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    public void indexar(ResumenVehiculo vehiculo) {
+        cerrojo.writeLock().lock();
+        try {
+            Integer actual = posiciones.get(vehiculo.getId());
+            if (actual != null) {
+                liberar(actual);
+            }
+            int pos = reservarPosicion();
+            posiciones.put(vehiculo.getId(), pos);
+
+            ids[pos] = vehiculo.getId();
+            años[pos] = vehiculo.getAño();
+            kilometrajes[pos] = vehiculo.getKilometraje();
+            capacidades[pos] = vehiculo.getCapacidadPasajeros();
+            preciosTotales[pos] = vehiculo.getPrecioTotal() != null ? vehiculo.getPrecioTotal() : Double.NaN;
+            preciosPorDia[pos] = vehiculo.getPrecioPorDia() != null ? vehiculo.getPrecioPorDia() : Double.NaN;
+            tipos[pos] = (byte) vehiculo.getTipoOperacion().ordinal();
+            ubicaciones[pos] = normalizar(vehiculo.getUbicacion());
+            marcas[pos] = normalizar(vehiculo.getMarca());
+            modelos[pos] = normalizar(vehiculo.getModelo());
+
+            activos.set(pos);
+            porTipo[tipos[pos]].set(pos);
+            porMarca.computeIfAbsent(marcas[pos], m -> new BitSet()).set(pos);
+            nombresMarca.putIfAbsent(marcas[pos], vehiculo.getMarca());
+            trigramasUbicacion.añadir(pos, ubicaciones[pos]);
+            trigramasMarca.añadir(pos, marcas[pos]);
+            trigramasModelo.añadir(pos, modelos[pos]);
+            sugerenciasUbicacion.añadir(ubicaciones[pos], vehiculo.getUbicacion());
+            sugerenciasMarca.añadir(marcas[pos], vehiculo.getMarca());
+            sugerenciasModelo.añadir(modelos[pos], vehiculo.getModelo());
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long id) {
+        cerrojo.writeLock().lock();
+        try {
+            Integer pos = posiciones.remove(id);
+            if (pos != null) {
+                liberar(pos);
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve como mucho {@code limite} ids que cumplen el filtro, en el orden
+     * pedido y a continuación del cursor (si lo hay), sin los ids de
+     * {@code excluidos}.
+     */
+    public List<Long> buscar(FiltroVehiculos filtro, Collection<Long> excluidos, OrdenVehiculos orden,
+                             CursorPaginacion desde, int limite) {
+        cerrojo.readLock().lock();
+        try {
+            BitSet candidatos = filtrar(filtro, excluidos);
+            double claveCursor = 0;
+            long idCursor = 0;
+            if (desde != null) {
+                claveCursor = desde.getValor() != null ? Double.parseDouble(desde.getValor()) : 0;
+                idCursor = desde.getId();
+            }
+
+            // Montículo con el peor de los seleccionados en la cima.
+            PriorityQueue<Integer> seleccion = new PriorityQueue<>(
+                    (a, b) -> comparar(orden, clave(orden, b), ids[b], clave(orden, a), ids[a]));
+            for (int pos = candidatos.nextSetBit(0); pos >= 0; pos = candidatos.nextSetBit(pos + 1)) {
+                double clave = clave(orden, pos);
+                if (desde != null && comparar(orden, clave, ids[pos], claveCursor, idCursor) <= 0) {
+                    continue;
+                }
+                if (seleccion.size() < limite) {
+                    seleccion.add(pos);
+                } else {
+                    int peor = seleccion.peek();
+                    if (comparar(orden, clave, ids[pos], clave(orden, peor), ids[peor]) < 0) {
+                        seleccion.poll();
+                        seleccion.add(pos);
+                    }
+                }
+            }
+
+            List<Integer> ordenadas = new ArrayList<>(seleccion);
+            ordenadas.sort((a, b) -> comparar(orden, clave(orden, a), ids[a], clave(orden, b), ids[b]));
+            List<Long> resultado = new ArrayList<>(ordenadas.size());
+            for (int pos : ordenadas) {
+                resultado.add(ids[pos]);
+            }
+            return resultado;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    public List<Sugerencia> sugerir(CampoSugerencia campo, String prefijo, int limite) {
+        String clave = normalizar(prefijo);
+        int cuantas = Math.min(limite, MAXIMO_SUGERENCIAS);
+        cerrojo.readLock().lock();
+        try {
+            return switch (campo) {
+                case MARCA -> sugerenciasMarca.sugerir(clave, cuantas);
+                case MODELO -> sugerenciasModelo.sugerir(clave, cuantas);
+                case UBICACION -> sugerenciasUbicacion.sugerir(clave, cuantas);
+            };
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marcas y tipos se cuentan intersecando sus mapas de bits con el resultado;
+     * los tramos de año, kilometraje y precio, en una pasada sobre él.
+     */
+    public FacetasVehiculos facetas(FiltroVehiculos filtro, Collection<Long> excluidos) {
+        cerrojo.readLock().lock();
+        try {
+            BitSet candidatos = filtrar(filtro, excluidos);
+            AcumuladorFacetas acumulador = new AcumuladorFacetas();
+            porMarca.forEach((marca, bits) ->
+                    acumulador.añadirMarca(nombresMarca.get(marca), cardinalidadComun(bits, candidatos)));
+            for (TipoOperacion tipo : TipoOperacion.values()) {
+                acumulador.añadirTipo(tipo, cardinalidadComun(porTipo[tipo.ordinal()], candidatos));
+            }
+            for (int pos = candidatos.nextSetBit(0); pos >= 0; pos = candidatos.nextSetBit(pos + 1)) {
+                acumulador.contarTotal();
+                acumulador.añadirSinMarcaNiTipo(años[pos], kilometrajes[pos], preciosTotales[pos], preciosPorDia[pos]);
+            }
+            return acumulador.resultado();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    private static long cardinalidadComun(BitSet a, BitSet b) {
+        BitSet comun = (BitSet) a.clone();
+        comun.and(b);
+        return comun.cardinality();
+    }
+
+    private BitSet filtrar(FiltroVehiculos filtro, Collection<Long> excluidos) {
+        BitSet candidatos = (BitSet) activos.clone();
+        if (filtro.getTipo() != null) {
+            candidatos.and(porTipo[filtro.getTipo().ordinal()]);
+        }
+        if (filtro.tieneFechas()) {
+            candidatos.and(porTipo[TipoOperacion.ALQUILER.ordinal()]);
+        }
+        for (Long id : excluidos) {
+            Integer pos = posiciones.get(id);
+            if (pos != null) {
+                candidatos.clear(pos);
+            }
+        }
+
+        String ubicacion = normalizarFiltro(filtro.getUbicacion());
+        String marca = normalizarFiltro(filtro.getMarca());
+        String modelo = normalizarFiltro(filtro.getModelo());
+        if (ubicacion != null) {
+            trigramasUbicacion.restringir(candidatos, ubicacion);
+        }
+        if (marca != null) {
+            trigramasMarca.restringir(candidatos, marca);
+        }
+        if (modelo != null) {
+            trigramasModelo.restringir(candidatos, modelo);
+        }
+
+        for (int pos = candidatos.nextSetBit(0); pos >= 0; pos = candidatos.nextSetBit(pos + 1)) {
+            if (!cumple(pos, filtro, ubicacion, marca, modelo)) {
+                candidatos.clear(pos);
+            }
+        }
+        return candidatos;
+    }
+
+    private boolean cumple(int pos, FiltroVehiculos filtro, String ubicacion, String marca, String modelo) {
+        if (filtro.getPrecioMin() != null
+                && !(preciosTotales[pos] >= filtro.getPrecioMin() || preciosPorDia[pos] >= filtro.getPrecioMin())) {
+            return false;
+        }
+        if (filtro.getPrecioMax() != null
+                && !(preciosTotales[pos] <= filtro.getPrecioMax() || preciosPorDia[pos] <= filtro.getPrecioMax())) {
+            return false;
+        }
+        if (filtro.getAñoMin() != null && años[pos] < filtro.getAñoMin()) {
+            return false;
+        }
+        if (filtro.getAñoMax() != null && años[pos] > filtro.getAñoMax()) {
+            return false;
+        }
+        if (filtro.getKilometrajeMax() != null && kilometrajes[pos] > filtro.getKilometrajeMax()) {
+            return false;
+        }
+        if (filtro.getCapacidadMin() != null && capacidades[pos] < filtro.getCapacidadMin()) {
+            return false;
+        }
+        if (ubicacion != null && !ubicaciones[pos].contains(ubicacion)) {
+            return false;
+        }
+        if (marca != null && !marcas[pos].contains(marca)) {
+            return false;
+        }
+        return modelo == null || modelos[pos].contains(modelo);
+    }
+
+    private double clave(OrdenVehiculos orden, int pos) {
+        if (orden.getCampo() == null) {
+            return 0;
+        }
+        return switch (orden.getCampo()) {
+            case "precio" -> !Double.isNaN(preciosTotales[pos]) ? preciosTotales[pos]
+                    : !Double.isNaN(preciosPorDia[pos]) ? preciosPorDia[pos] : 0;
+            case "año" -> años[pos];
+            default -> kilometrajes[pos];
+        };
+    }
+
+    private static int comparar(OrdenVehiculos orden, double clave1, long id1, double clave2, long id2) {
+        int resultado = Double.compare(clave1, clave2);
+        if (resultado == 0) {
+            resultado = Long.compare(id1, id2);
+        }
+        return orden.isAscendente() ? resultado : -resultado;
+    }
+
+    private int reservarPosicion() {
+        if (!posicionesLibres.isEmpty()) {
+            return posicionesLibres.pop();
+        }
+        if (ocupadas == ids.length) {
+            int capacidad = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacidad);
+            años = Arrays.copyOf(años, capacidad);
+            kilometrajes = Arrays.copyOf(kilometrajes, capacidad);
+            capacidades = Arrays.copyOf(capacidades, capacidad);
+            preciosTotales = Arrays.copyOf(preciosTotales, capacidad);
+            preciosPorDia = Arrays.copyOf(preciosPorDia, capacidad);
+            tipos = Arrays.copyOf(tipos, capacidad);
+            ubicaciones = Arrays.copyOf(ubicaciones, capacidad);
+            marcas = Arrays.copyOf(marcas, capacidad);
+            modelos = Arrays.copyOf(modelos, capacidad);
+        }
+        return ocupadas++;
+    }
+
+    private void liberar(int pos) {
+        activos.clear(pos);
+        porTipo[tipos[pos]].clear(pos);
+        BitSet conMarca = porMarca.get(marcas[pos]);
+        if (conMarca != null) {
+            conMarca.clear(pos);
+            if (conMarca.isEmpty()) {
+                porMarca.remove(marcas[pos]);
+                nombresMarca.remove(marcas[pos]);
+            }
+        }
+        trigramasUbicacion.quitar(pos, ubicaciones[pos]);
+        trigramasMarca.quitar(pos, marcas[pos]);
+        trigramasModelo.quitar(pos, modelos[pos]);
+        sugerenciasUbicacion.quitar(ubicaciones[pos]);
+        sugerenciasMarca.quitar(marcas[pos]);
+        sugerenciasModelo.quitar(modelos[pos]);
+        ubicaciones[pos] = null;
+        marcas[pos] = null;
+        modelos[pos] = null;
+        posicionesLibres.push(pos);
+    }
+
+    private static String normalizar(String valor) {
+        return valor != null ? sinAcentos(valor.toLowerCase(Locale.ROOT)) : "";
+    }
+
+    private static String normalizarFiltro(String valor) {
+        return valor != null && !valor.isBlank() ? sinAcentos(valor.toLowerCase(Locale.ROOT)) : null;
+    }
+
+    /**
+     * Quita tildes y diéresis para comparar como la intercalación de MySQL
+     * (utf8mb4_0900_ai_ci), con la que "malaga" encuentra "Málaga".
+     */
+    private static String sinAcentos(String valor) {
+        String descompuesto = Normalizer.normalize(valor, Normalizer.Form.NFD);
+        if (descompuesto.length() == valor.length()) {
+            return valor;
+        }
+        return MARCAS_DIACRITICAS.matcher(descompuesto).replaceAll("");
+    }
+}
@@ -0,0 +1,124 @@
+package com.appCasa.app.indice;
+
+import com.appCasa.app.modelo.Sugerencia;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Árbol de prefijos con el número de anuncios de cada valor. Cada nodo guarda
+ * ya calculadas las mejores terminaciones de su subárbol, que se recalculan
+ * solo en el camino afectado al añadir o quitar un valor; así una consulta no
+ * recorre el subárbol. No es seguro para hilos: lo protege el cerrojo de
+ * {@link IndiceVehiculos}.
+ */
+class TrieSugerencias {
+
+    static final int MAXIMO_SUGERENCIAS = 10;
+
+    private static final Comparator<Nodo> POR_CUENTA = Comparator
+            .comparingInt((Nodo n) -> n.cuenta).reversed()
+            .thenComparing(n -> n.texto);
+
+    private final Nodo raiz = new Nodo();
+
+    private static final class Nodo {
+        private final Map<Character, Nodo> hijos = new HashMap<>();
+        private int cuenta;
+        private String texto;
+        private List<Nodo> mejores = List.of();
+    }
+
+    void añadir(String clave, String texto) {
+        List<Nodo> camino = camino(clave, true);
+        Nodo ultimo = camino.get(camino.size() - 1);
+        if (ultimo.cuenta++ == 0) {
+            ultimo.texto = texto;
+        }
+        recalcular(camino);
+    }
+
+    void quitar(String clave) {
+        List<Nodo> camino = camino(clave, false);
+        if (camino == null) {
+            return;
+        }
+        Nodo ultimo = camino.get(camino.size() - 1);
+        if (ultimo.cuenta == 0) {
+            return;
+        }
+        ultimo.cuenta--;
+        for (int i = camino.size() - 1; i > 0; i--) {
+            Nodo nodo = camino.get(i);
+            if (nodo.cuenta > 0 || !nodo.hijos.isEmpty()) {
+                break;
+            }
+            camino.get(i - 1).hijos.remove(clave.charAt(i - 1));
+            camino.remove(i);
+        }
+        recalcular(camino);
+    }
+
+    void vaciar() {
+        raiz.hijos.clear();
+        raiz.cuenta = 0;
+        raiz.mejores = List.of();
+    }
+
+    List<Sugerencia> sugerir(String prefijo, int limite) {
+        Nodo nodo = raiz;
+        for (int i = 0; i < prefijo.length() && nodo != null; i++) {
+            nodo = nodo.hijos.get(prefijo.charAt(i));
+        }
+        if (nodo == null) {
+            return List.of();
+        }
+        List<Sugerencia> sugerencias = new ArrayList<>();
+        for (Nodo mejor : nodo.mejores) {
+            if (sugerencias.size() == limite) {
+                break;
+            }
+            sugerencias.add(new Sugerencia(mejor.texto, (long) mejor.cuenta));
+        }
+        return sugerencias;
+    }
+
+    private List<Nodo> camino(String clave, boolean crear) {
+        List<Nodo> camino = new ArrayList<>(clave.length() + 1);
+        Nodo nodo = raiz;
+        camino.add(nodo);
+        for (int i = 0; i < clave.length(); i++) {
+            Nodo hijo = nodo.hijos.get(clave.charAt(i));
+            if (hijo == null) {
+                if (!crear) {
+                    return null;
+                }
+                hijo = new Nodo();
+                nodo.hijos.put(clave.charAt(i), hijo);
+            }
+            nodo = hijo;
+            camino.add(nodo);
+        }
+        return camino;
+    }
+
+    private static void recalcular(List<Nodo> camino) {
+        for (int i = camino.size() - 1; i >= 0; i--) {
+            Nodo nodo = camino.get(i);
+            List<Nodo> candidatos = new ArrayList<>();
+            if (nodo.cuenta > 0) {
+                candidatos.add(nodo);
+            }
+            for (Nodo hijo : nodo.hijos.values()) {
+                candidatos.addAll(hijo.mejores);
+            }
+            candidatos.sort(POR_CUENTA);
+            nodo.mejores = candidatos.size() > MAXIMO_SUGERENCIAS
+                    ? List.copyOf(candidatos.subList(0, MAXIMO_SUGERENCIAS))
+                    : List.copyOf(candidatos);
+        }
+    }
+}
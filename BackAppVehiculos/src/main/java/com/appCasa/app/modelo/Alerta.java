@@ -27,6 +27,9 @@ public class Alerta {
 
     private Boolean activa = true;
 
+    /** Si ya se buscaron los vehículos publicados antes de crear la alerta. */
+    private Boolean coincidenciasCargadas = false;
+
     @ManyToOne
     @JoinColumn(name = "usuario_id")
     private Usuario usuario;
@@ -0,0 +1,15 @@
+package com.appCasa.app.modelo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CalendarioVehiculo {
+    private LocalDate desde;
+    private LocalDate hasta;
+    private List<TramoCalendario> tramos;
+}
@@ -0,0 +1,7 @@
+package com.appCasa.app.modelo;
+
+public enum CampoSugerencia {
+    MARCA,
+    MODELO,
+    UBICACION
+}
@@ -0,0 +1,38 @@
+package com.appCasa.app.modelo;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "coincidencias_alerta", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_coincidencias_alerta_vehiculo", columnNames = { "alerta_id", "vehiculo_id" })
+}, indexes = {
+        @Index(name = "idx_coincidencias_vehiculo", columnList = "vehiculo_id"),
+        @Index(name = "idx_coincidencias_pendientes", columnList = "notificada, alerta_id")
+})
+public class CoincidenciaAlerta {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "alerta_id", nullable = false)
+    private Alerta alerta;
+
+    @ManyToOne
+    @JoinColumn(name = "vehiculo_id", nullable = false)
+    private Vehiculo vehiculo;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+
+    /** Si ya se incluyó en un resumen por correo. */
+    @Column(nullable = false)
+    private Boolean notificada = false;
+}
@@ -0,0 +1,12 @@
+package com.appCasa.app.modelo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ConflictoLote {
+    private int indice;
+    private Long vehiculoId;
+    private String error;
+}
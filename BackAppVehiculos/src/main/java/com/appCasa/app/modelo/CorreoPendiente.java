@@ -0,0 +1,52 @@
+package com.appCasa.app.modelo;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Correo a la espera de enviarse. Se guarda en la transacción de quien lo
+ * genera y lo envían después los hilos de {@code EnvioCorreos}. Los que
+ * agotan los reintentos quedan descartados, con el último error, para
+ * revisarlos o volver a encolarlos.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "correos_pendientes", indexes = {
+        @Index(name = "idx_correos_pendientes", columnList = "enviado, descartado, siguiente_intento, id")
+})
+public class CorreoPendiente {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String destinatario;
+
+    @Column(nullable = false)
+    private String asunto;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String cuerpo;
+
+    @Column(nullable = false)
+    private LocalDateTime creado;
+
+    @Column(nullable = false)
+    private LocalDateTime siguienteIntento;
+
+    @Column(nullable = false)
+    private int intentos;
+
+    private LocalDateTime enviado;
+
+    private LocalDateTime descartado;
+
+    @Column(length = 1000)
+    private String ultimoError;
+}
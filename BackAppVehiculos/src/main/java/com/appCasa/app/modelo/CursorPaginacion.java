@@ -0,0 +1,33 @@
+package com.appCasa.app.modelo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+@Data
+@AllArgsConstructor
+public class CursorPaginacion {
+    private String valor;
+    private Long id;
+
+    public String codificar() {
+        String plano = (valor != null ? valor : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plano.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CursorPaginacion decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = plano.lastIndexOf('|');
+            String valor = plano.substring(0, separador);
+            Long id = Long.valueOf(plano.substring(separador + 1));
+            return new CursorPaginacion(valor.isEmpty() ? null : valor, id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new RuntimeException("El cursor de paginación no es válido.");
+        }
+    }
+}
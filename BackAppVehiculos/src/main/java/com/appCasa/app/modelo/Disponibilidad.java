@@ -3,11 +3,16 @@ package com.appCasa.app.modelo;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.LocalDate;
+
 @Entity
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "disponibilidades")
+@Table(name = "disponibilidades", indexes = {
+        @Index(name = "idx_disponibilidades_vehiculo_fechas", columnList = "vehiculo_id, fecha_inicio, fecha_fin"),
+        @Index(name = "idx_disponibilidades_fecha_fin", columnList = "fecha_fin, fecha_inicio, vehiculo_id")
+})
 public class Disponibilidad {
 
     @Id
@@ -19,10 +24,10 @@ public class Disponibilidad {
     private Vehiculo vehiculo;
 
     @Column(nullable = false)
-    private String fechaInicio;
+    private LocalDate fechaInicio;
 
     @Column(nullable = false)
-    private String fechaFin;
+    private LocalDate fechaFin;
 
     @Column(nullable = false)
     private String motivo;
@@ -0,0 +1,8 @@
+package com.appCasa.app.modelo;
+
+public enum EstadoDia {
+    LIBRE,
+    PENDIENTE,
+    BLOQUEADO,
+    CONFIRMADO
+}
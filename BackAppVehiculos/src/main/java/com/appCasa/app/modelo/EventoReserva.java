@@ -0,0 +1,67 @@
+package com.appCasa.app.modelo;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Cambio de una reserva pendiente de notificar. Se guarda en la misma
+ * transacción que el cambio y copia los datos necesarios para los correos,
+ * porque las reservas canceladas o expiradas ya no existen cuando se envían.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "eventos_reserva", indexes = {
+        @Index(name = "idx_eventos_reserva_pendientes", columnList = "procesado, siguiente_intento, id")
+})
+public class EventoReserva {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TipoEventoReserva tipo;
+
+    @Column(nullable = false)
+    private Long reservaId;
+
+    @Column(nullable = false)
+    private Long vehiculoId;
+
+    @Enumerated(EnumType.STRING)
+    private TipoOperacion tipoOperacion;
+
+    private String vehiculo;
+
+    private String nombreUsuario;
+
+    private String emailUsuario;
+
+    private String emailPropietario;
+
+    private LocalDate fechaInicio;
+
+    private LocalDate fechaFin;
+
+    private Double total;
+
+    @Column(nullable = false)
+    private LocalDateTime creado;
+
+    @Column(nullable = false)
+    private LocalDateTime siguienteIntento;
+
+    @Column(nullable = false)
+    private int intentos;
+
+    private LocalDateTime procesado;
+
+    @Column(length = 1000)
+    private String ultimoError;
+}
@@ -0,0 +1,13 @@
+package com.appCasa.app.modelo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class ExpiracionReserva {
+    private Long reservaId;
+    private LocalDate fechaExpiracion;
+}
@@ -0,0 +1,17 @@
+package com.appCasa.app.modelo;
+
+import lombok.*;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetasVehiculos {
+    private long total;
+    private Map<String, Long> marcas;
+    private Map<String, Long> tiposOperacion;
+    private Map<String, Long> años;
+    private Map<String, Long> kilometrajes;
+    private Map<String, Long> preciosVenta;
+    private Map<String, Long> preciosAlquiler;
+}
@@ -0,0 +1,37 @@
+package com.appCasa.app.modelo;
+
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FiltroVehiculos {
+    private String ubicacion;
+    private Double precioMin;
+    private Double precioMax;
+    private Integer añoMin;
+    private Integer añoMax;
+    private Integer kilometrajeMax;
+    private Integer capacidadMin;
+    private String marca;
+    private String modelo;
+    private TipoOperacion tipo;
+    private LocalDate fechaInicio;
+    private LocalDate fechaFin;
+
+    public FiltroVehiculos normalizado() {
+        return new FiltroVehiculos(normalizar(ubicacion), precioMin, precioMax, añoMin, añoMax,
+                kilometrajeMax, capacidadMin, normalizar(marca), normalizar(modelo), tipo, fechaInicio, fechaFin);
+    }
+
+    public boolean tieneFechas() {
+        return fechaInicio != null && fechaFin != null;
+    }
+
+    private static String normalizar(String valor) {
+        return valor != null && !valor.isBlank() ? valor.trim().toLowerCase(Locale.ROOT) : null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.appCasa.app.modelo;
+
+import java.time.Duration;
+
+/** Cada cuánto recibe un usuario el resumen de sus alertas. */
+public enum FrecuenciaAlertas {
+    INMEDIATA(Duration.ZERO),
+    HORARIA(Duration.ofHours(1)),
+    DIARIA(Duration.ofDays(1));
+
+    private final Duration ventana;
+
+    FrecuenciaAlertas(Duration ventana) {
+        this.ventana = ventana;
+    }
+
+    public Duration getVentana() {
+        return ventana;
+    }
+}
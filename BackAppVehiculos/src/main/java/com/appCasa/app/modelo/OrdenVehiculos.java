@@ -0,0 +1,25 @@
+package com.appCasa.app.modelo;
+
+public enum OrdenVehiculos {
+    RECIENTES(null, false),
+    PRECIO_ASC("precio", true),
+    PRECIO_DESC("precio", false),
+    AÑO_DESC("año", false),
+    KILOMETRAJE_ASC("kilometraje", true);
+
+    private final String campo;
+    private final boolean ascendente;
+
+    OrdenVehiculos(String campo, boolean ascendente) {
+        this.campo = campo;
+        this.ascendente = ascendente;
+    }
+
+    public String getCampo() {
+        return campo;
+    }
+
+    public boolean isAscendente() {
+        return ascendente;
+    }
+}
@@ -0,0 +1,12 @@
+package com.appCasa.app.modelo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class PaginaVehiculos {
+    private List<Vehiculo> vehiculos;
+    private String siguienteCursor;
+}
@@ -3,11 +3,16 @@ package com.appCasa.app.modelo;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.LocalDate;
+
 @Entity
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "reservas")
+@Table(name = "reservas", indexes = {
+        @Index(name = "idx_reservas_vehiculo_fechas", columnList = "vehiculo_id, fecha_inicio, fecha_fin"),
+        @Index(name = "idx_reservas_fecha_fin", columnList = "fecha_fin, fecha_inicio, vehiculo_id")
+})
 public class Reserva {
 
     @Id
@@ -23,16 +28,16 @@ public class Reserva {
     private Vehiculo vehiculo;
 
     @Column(nullable = true)
-    private String fechaInicio;
+    private LocalDate fechaInicio;
 
     @Column(nullable = true)
-    private String fechaFin;
+    private LocalDate fechaFin;
 
     @Column(nullable = true)
-    private String fechaReserva;
+    private LocalDate fechaReserva;
 
     @Column(nullable = true)
-    private String fechaExpiracion;
+    private LocalDate fechaExpiracion;
 
     @Column(nullable = false)
     private Double total;
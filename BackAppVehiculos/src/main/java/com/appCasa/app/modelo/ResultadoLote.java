@@ -0,0 +1,12 @@
+package com.appCasa.app.modelo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ResultadoLote {
+    private List<Reserva> reservas;
+    private List<ConflictoLote> conflictos;
+}
@@ -0,0 +1,26 @@
+package com.appCasa.app.modelo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ResumenVehiculo {
+    private Long id;
+    private String ubicacion;
+    private String marca;
+    private String modelo;
+    private Integer año;
+    private Integer kilometraje;
+    private Integer capacidadPasajeros;
+    private Double precioTotal;
+    private Double precioPorDia;
+    private TipoOperacion tipoOperacion;
+
+    public static ResumenVehiculo de(Vehiculo vehiculo) {
+        return new ResumenVehiculo(vehiculo.getId(), vehiculo.getUbicacion(), vehiculo.getMarca(),
+                vehiculo.getModelo(), vehiculo.getAño(), vehiculo.getKilometraje(),
+                vehiculo.getCapacidadPasajeros(), vehiculo.getPrecioTotal(), vehiculo.getPrecioPorDia(),
+                vehiculo.getTipoOperacion());
+    }
+}
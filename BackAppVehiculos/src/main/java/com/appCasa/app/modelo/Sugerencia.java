@@ -0,0 +1,11 @@
+package com.appCasa.app.modelo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class Sugerencia {
+    private String valor;
+    private Long cuenta;
+}
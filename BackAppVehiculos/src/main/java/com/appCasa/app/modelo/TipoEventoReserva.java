@@ -0,0 +1,9 @@
+package com.appCasa.app.modelo;
+
+public enum TipoEventoReserva {
+    CREADA,
+    CONFIRMADA,
+    RECHAZADA,
+    CANCELADA,
+    EXPIRADA
+}
@@ -0,0 +1,14 @@
+package com.appCasa.app.modelo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class TramoCalendario {
+    private LocalDate inicio;
+    private LocalDate fin;
+    private EstadoDia estado;
+}
@@ -1,5 +1,6 @@
 package com.appCasa.app.modelo;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import jakarta.persistence.*;
@@ -35,6 +36,12 @@ public class Usuario {
     private String telefono;
     private String direccion;
 
+    @Enumerated(EnumType.STRING)
+    private FrecuenciaAlertas frecuenciaAlertas = FrecuenciaAlertas.INMEDIATA;
+
+    @JsonIgnore
+    private LocalDateTime ultimoResumenAlertas;
+
     @OneToMany(mappedBy = "usuario")
     @JsonIgnore
     private List<Vehiculo> vehiculos;
@@ -0,0 +1,97 @@
+package com.appCasa.app.plantilla;
+
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+
+/**
+ * Formato de números, importes y fechas de un idioma, escrito directamente
+ * en el buffer de la plantilla. A diferencia de {@code NumberFormat}, no
+ * guarda estado entre llamadas, así que una instancia sirve a todos los
+ * hilos, y no crea cadenas intermedias.
+ */
+public final class FormatoRegional {
+
+    private final char separadorMiles;
+    private final char separadorDecimal;
+    private final String simboloMoneda;
+    private final DateTimeFormatter fecha;
+    private final DateTimeFormatter fechaHora;
+
+    public FormatoRegional(Locale idioma) {
+        DecimalFormatSymbols simbolos = DecimalFormatSymbols.getInstance(idioma);
+        this.separadorMiles = simbolos.getGroupingSeparator();
+        this.separadorDecimal = simbolos.getDecimalSeparator();
+        this.simboloMoneda = simbolos.getCurrencySymbol();
+        this.fecha = DateTimeFormatter.ofLocalizedDate(FormatStyle.LONG).withLocale(idioma);
+        this.fechaHora = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.LONG, FormatStyle.SHORT).withLocale(idioma);
+    }
+
+    /** Entero con o sin separador de miles. */
+    public void entero(long valor, boolean agrupar, StringBuilder destino) {
+        if (valor == Long.MIN_VALUE) {
+            destino.append(valor);
+            return;
+        }
+        if (valor < 0) {
+            destino.append('-');
+            valor = -valor;
+        }
+        // Las cifras se escriben al revés y luego se da la vuelta al tramo.
+        int inicio = destino.length();
+        int cifras = 0;
+        do {
+            if (agrupar && cifras > 0 && cifras % 3 == 0) {
+                destino.append(separadorMiles);
+            }
+            destino.append((char) ('0' + valor % 10));
+            valor /= 10;
+            cifras++;
+        } while (valor > 0);
+        for (int i = inicio, j = destino.length() - 1; i < j; i++, j--) {
+            char c = destino.charAt(i);
+            destino.setCharAt(i, destino.charAt(j));
+            destino.setCharAt(j, c);
+        }
+    }
+
+    /** Número con separador de miles y dos decimales como mucho; sin ellos si es entero. */
+    public void numero(double valor, StringBuilder destino) {
+        decimal(valor, false, destino);
+    }
+
+    /** Importe con dos decimales y el símbolo de la moneda detrás. */
+    public void moneda(double valor, StringBuilder destino) {
+        decimal(valor, true, destino);
+        destino.append(' ').append(simboloMoneda);
+    }
+
+    public void fecha(LocalDate valor, StringBuilder destino) {
+        fecha.formatTo(valor, destino);
+    }
+
+    public void fechaHora(LocalDateTime valor, StringBuilder destino) {
+        fechaHora.formatTo(valor, destino);
+    }
+
+    private void decimal(double valor, boolean siempreDecimales, StringBuilder destino) {
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            destino.append(valor);
+            return;
+        }
+        long centimos = Math.round(Math.abs(valor) * 100);
+        if (valor < 0 && centimos > 0) {
+            destino.append('-');
+        }
+        entero(centimos / 100, true, destino);
+        long resto = centimos % 100;
+        if (siempreDecimales || resto != 0) {
+            destino.append(separadorDecimal)
+                    .append((char) ('0' + resto / 10))
+                    .append((char) ('0' + resto % 10));
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.appCasa.app.plantilla;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plantilla HTML ya analizada. La sintaxis es un subconjunto de Mustache:
+ * <ul>
+ * <li>{@code {{nombre}}} escribe el valor escapado para HTML; admite un
+ * formato tras una barra, {@code numero} o {@code moneda}. Las fechas se
+ * escriben siempre con el formato largo del idioma.</li>
+ * <li>{@code {{#nombre}}...{{/nombre}}} repite el bloque por cada elemento
+ * si el valor es una colección de mapas, o lo escribe una vez si no es nulo,
+ * {@code false}, cero ni una colección vacía.</li>
+ * <li>{@code {{^nombre}}...{{/nombre}}} escribe el bloque en el caso contrario.</li>
+ * <li>{@code {{! comentario}}} no escribe nada.</li>
+ * </ul>
+ * Los nombres se buscan en el elemento de la sección más interna y, si no
+ * están, en los de fuera. Analizar se hace una vez al arrancar; escribir solo
+ * recorre los nodos y añade al buffer.
+ */
+public final class Plantilla {
+
+    private enum Formato { POR_DEFECTO, NUMERO, MONEDA }
+
+    private sealed interface Nodo permits Texto, Variable, Seccion {
+    }
+
+    private record Texto(String texto) implements Nodo {
+    }
+
+    private record Variable(String nombre, Formato formato) implements Nodo {
+    }
+
+    private record Seccion(String nombre, boolean invertida, Nodo[] hijos) implements Nodo {
+    }
+
+    private final String nombre;
+    private final Nodo[] nodos;
+    private final int profundidad;
+
+    private Plantilla(String nombre, Nodo[] nodos, int profundidad) {
+        this.nombre = nombre;
+        this.nodos = nodos;
+        this.profundidad = profundidad;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public static Plantilla compilar(String nombre, String fuente) {
+        Deque<List<Nodo>> abiertas = new ArrayDeque<>();
+        Deque<String[]> secciones = new ArrayDeque<>();
+        List<Nodo> actual = new ArrayList<>();
+        int profundidad = 1;
+        int posicion = 0;
+        while (posicion < fuente.length()) {
+            int apertura = fuente.indexOf("{{", posicion);
+            if (apertura < 0) {
+                actual.add(new Texto(fuente.substring(posicion)));
+                break;
+            }
+            int cierre = fuente.indexOf("}}", apertura + 2);
+            if (cierre < 0) {
+                throw new IllegalStateException("Plantilla " + nombre + ": etiqueta sin cerrar en la posición " + apertura);
+            }
+            String etiqueta = fuente.substring(apertura + 2, cierre).trim();
+            if (etiqueta.isEmpty()) {
+                throw new IllegalStateException("Plantilla " + nombre + ": etiqueta vacía en la posición " + apertura);
+            }
+            char tipo = etiqueta.charAt(0);
+            int finEtiqueta = cierre + 2;
+            int inicioLinea = fuente.lastIndexOf('\n', apertura - 1) + 1;
+            int finLinea = fuente.indexOf('\n', finEtiqueta);
+            if (finLinea < 0) {
+                finLinea = fuente.length() - 1;
+            }
+            // Una sección o un comentario solos en su línea no dejan una línea en blanco en el resultado.
+            boolean sola = "#^/!".indexOf(tipo) >= 0
+                    && inicioLinea >= posicion
+                    && fuente.substring(inicioLinea, apertura).isBlank()
+                    && fuente.substring(finEtiqueta, finLinea + 1).isBlank();
+            int finTexto = sola ? inicioLinea : apertura;
+            if (finTexto > posicion) {
+                actual.add(new Texto(fuente.substring(posicion, finTexto)));
+            }
+            posicion = sola ? finLinea + 1 : finEtiqueta;
+            String clave = etiqueta.substring(1).trim();
+            switch (tipo) {
+                case '!' -> {
+                    // Comentario.
+                }
+                case '#', '^' -> {
+                    abiertas.push(actual);
+                    secciones.push(new String[] { clave, String.valueOf(tipo) });
+                    profundidad = Math.max(profundidad, secciones.size() + 1);
+                    actual = new ArrayList<>();
+                }
+                case '/' -> {
+                    if (secciones.isEmpty() || !secciones.peek()[0].equals(clave)) {
+                        throw new IllegalStateException("Plantilla " + nombre + ": {{/" + clave + "}} no cierra ninguna sección abierta");
+                    }
+                    String[] seccion = secciones.pop();
+                    Nodo[] hijos = actual.toArray(new Nodo[0]);
+                    actual = abiertas.pop();
+                    actual.add(new Seccion(seccion[0], seccion[1].equals("^"), hijos));
+                }
+                default -> actual.add(variable(nombre, etiqueta));
+            }
+        }
+        if (!secciones.isEmpty()) {
+            throw new IllegalStateException("Plantilla " + nombre + ": falta {{/" + secciones.peek()[0] + "}}");
+        }
+        return new Plantilla(nombre, actual.toArray(new Nodo[0]), profundidad);
+    }
+
+    /** Escribe la plantilla con los datos dados al final de {@code destino}. */
+    public void renderizar(Map<String, ?> datos, StringBuilder destino, FormatoRegional formato) {
+        Object[] pila = new Object[profundidad];
+        pila[0] = datos;
+        escribir(nodos, pila, 1, destino, formato);
+    }
+
+    private static Variable variable(String plantilla, String etiqueta) {
+        int barra = etiqueta.indexOf('|');
+        if (barra < 0) {
+            return new Variable(etiqueta, Formato.POR_DEFECTO);
+        }
+        String formato = etiqueta.substring(barra + 1).trim();
+        return new Variable(etiqueta.substring(0, barra).trim(), switch (formato) {
+            case "numero" -> Formato.NUMERO;
+            case "moneda" -> Formato.MONEDA;
+            default -> throw new IllegalStateException("Plantilla " + plantilla + ": formato desconocido '" + formato + "'");
+        });
+    }
+
+    private static void escribir(Nodo[] nodos, Object[] pila, int altura, StringBuilder destino, FormatoRegional formato) {
+        for (Nodo nodo : nodos) {
+            if (nodo instanceof Texto texto) {
+                destino.append(texto.texto());
+            } else if (nodo instanceof Variable variable) {
+                Object valor = buscar(variable.nombre(), pila, altura);
+                if (valor != null) {
+                    valor(valor, variable.formato(), destino, formato);
+                }
+            } else {
+                Seccion seccion = (Seccion) nodo;
+                Object valor = buscar(seccion.nombre(), pila, altura);
+                if (seccion.invertida()) {
+                    if (!verdadero(valor)) {
+                        escribir(seccion.hijos(), pila, altura, destino, formato);
+                    }
+                } else if (valor instanceof Collection<?> elementos) {
+                    for (Object elemento : elementos) {
+                        pila[altura] = elemento;
+                        escribir(seccion.hijos(), pila, altura + 1, destino, formato);
+                    }
+                    pila[altura] = null;
+                } else if (verdadero(valor)) {
+                    pila[altura] = valor;
+                    escribir(seccion.hijos(), pila, altura + 1, destino, formato);
+                    pila[altura] = null;
+                }
+            }
+        }
+    }
+
+    private static Object buscar(String nombre, Object[] pila, int altura) {
+        for (int i = altura - 1; i >= 0; i--) {
+            if (pila[i] instanceof Map<?, ?> mapa) {
+                Object valor = mapa.get(nombre);
+                if (valor != null || mapa.containsKey(nombre)) {
+                    return valor;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean verdadero(Object valor) {
+        if (valor == null || Boolean.FALSE.equals(valor)) {
+            return false;
+        }
+        if (valor instanceof Collection<?> elementos) {
+            return !elementos.isEmpty();
+        }
+        if (valor instanceof Number numero) {
+            return numero.doubleValue() != 0;
+        }
+        return true;
+    }
+
+    private static void valor(Object valor, Formato tipo, StringBuilder destino, FormatoRegional formato) {
+        if (valor instanceof Double || valor instanceof Float || valor instanceof BigDecimal) {
+            double numero = ((Number) valor).doubleValue();
+            if (tipo == Formato.MONEDA) {
+                formato.moneda(numero, destino);
+            } else {
+                formato.numero(numero, destino);
+            }
+        } else if (valor instanceof Long || valor instanceof Integer || valor instanceof Short) {
+            long numero = ((Number) valor).longValue();
+            if (tipo == Formato.MONEDA) {
+                formato.moneda(numero, destino);
+            } else {
+                // Sin formato se escribe tal cual: los años no llevan separador de miles.
+                formato.entero(numero, tipo == Formato.NUMERO, destino);
+            }
+        } else if (valor instanceof LocalDate fecha) {
+            formato.fecha(fecha, destino);
+        } else if (valor instanceof LocalDateTime fechaHora) {
+            formato.fechaHora(fechaHora, destino);
+        } else if (valor instanceof CharSequence texto) {
+            escapar(texto, destino);
+        } else {
+            escapar(valor.toString(), destino);
+        }
+    }
+
+    private static void escapar(CharSequence texto, StringBuilder destino) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '&' -> destino.append("&amp;");
+                case '<' -> destino.append("&lt;");
+                case '>' -> destino.append("&gt;");
+                case '"' -> destino.append("&quot;");
+                case '\'' -> destino.append("&#39;");
+                default -> destino.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.appCasa.app.plantilla;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Plantillas de correo de {@code resources/plantillas}. Se analizan todas al
+ * arrancar, de modo que un error de sintaxis impide levantar la aplicación
+ * en lugar de aparecer al enviar. Cada hilo escribe en su propio buffer,
+ * que se reutiliza entre correos.
+ */
+@Component
+public class Plantillas {
+
+    private static final int CAPACIDAD_INICIAL = 4 * 1024;
+    private static final int CAPACIDAD_MAXIMA = 64 * 1024;
+
+    private final Map<String, Plantilla> plantillas = new HashMap<>();
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(CAPACIDAD_INICIAL));
+    private FormatoRegional formato;
+
+    @Value("${app.correo.idioma:es-ES}")
+    private String idioma;
+
+    @PostConstruct
+    void cargar() throws IOException {
+        formato = new FormatoRegional(Locale.forLanguageTag(idioma));
+        for (Resource recurso : new PathMatchingResourcePatternResolver().getResources("classpath:plantillas/*.html")) {
+            String archivo = recurso.getFilename();
+            String nombre = archivo.substring(0, archivo.length() - ".html".length());
+            plantillas.put(nombre, Plantilla.compilar(nombre, recurso.getContentAsString(StandardCharsets.UTF_8)));
+        }
+    }
+
+    public String renderizar(String nombre, Map<String, ?> datos) {
+        Plantilla plantilla = plantillas.get(nombre);
+        if (plantilla == null) {
+            throw new IllegalArgumentException("No existe la plantilla " + nombre);
+        }
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        plantilla.renderizar(datos, buffer, formato);
+        String resultado = buffer.toString();
+        if (buffer.capacity() > CAPACIDAD_MAXIMA) {
+            // Un correo excepcionalmente grande no deja el buffer inflado para siempre.
+            buffers.set(new StringBuilder(CAPACIDAD_INICIAL));
+        }
+        return resultado;
+    }
+}
@@ -3,9 +3,20 @@ package com.appCasa.app.repositorio;
 import com.appCasa.app.modelo.Alerta;
 import com.appCasa.app.modelo.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 public interface AlertaRepository extends JpaRepository<Alerta, Long> {
     List<Alerta> findByUsuario(Usuario usuario);
     List<Alerta> findByActivaTrue();
-}
\ No newline at end of file
+    @Query("SELECT a.id FROM Alerta a WHERE a.activa = true "
+            + "AND (a.coincidenciasCargadas IS NULL OR a.coincidenciasCargadas = false)")
+    List<Long> findPendientesDeCoincidencias();
+    @Transactional
+    @Modifying
+    @Query("UPDATE Alerta a SET a.coincidenciasCargadas = true WHERE a.id = :id")
+    int marcarCoincidenciasCargadas(@Param("id") Long id);
+}
@@ -0,0 +1,53 @@
+package com.appCasa.app.repositorio;
+
+import com.appCasa.app.modelo.CoincidenciaAlerta;
+import com.appCasa.app.modelo.Usuario;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface CoincidenciaAlertaRepository extends JpaRepository<CoincidenciaAlerta, Long> {
+    @Query("SELECT c FROM CoincidenciaAlerta c JOIN FETCH c.vehiculo v WHERE c.alerta.id = :alertaId "
+            + "AND v.validada = true AND v.reservado = false "
+            + "AND (:antesDe IS NULL OR c.id < :antesDe) ORDER BY c.id DESC")
+    List<CoincidenciaAlerta> findDeAlerta(@Param("alertaId") Long alertaId,
+                                          @Param("antesDe") Long antesDe,
+                                          Limit limite);
+    @Query("SELECT DISTINCT a.usuario FROM CoincidenciaAlerta c JOIN c.alerta a JOIN c.vehiculo v "
+            + "WHERE c.notificada = false AND v.validada = true AND v.reservado = false")
+    List<Usuario> findUsuariosConPendientes();
+    @Query("SELECT c FROM CoincidenciaAlerta c JOIN FETCH c.vehiculo v JOIN c.alerta a "
+            + "WHERE c.notificada = false AND a.usuario.id = :usuarioId AND c.id <= :hasta "
+            + "AND v.validada = true AND v.reservado = false ORDER BY c.id DESC")
+    List<CoincidenciaAlerta> findPendientesDeUsuario(@Param("usuarioId") Long usuarioId,
+                                                     @Param("hasta") Long hasta,
+                                                     Limit limite);
+    @Query("SELECT MAX(c.id), COUNT(DISTINCT v.id) FROM CoincidenciaAlerta c JOIN c.alerta a JOIN c.vehiculo v "
+            + "WHERE c.notificada = false AND a.usuario.id = :usuarioId "
+            + "AND v.validada = true AND v.reservado = false")
+    List<Object[]> resumirPendientesDeUsuario(@Param("usuarioId") Long usuarioId);
+    @Modifying
+    @Query("UPDATE CoincidenciaAlerta c SET c.notificada = true WHERE c.notificada = false AND c.id <= :hasta "
+            + "AND c.alerta.id IN (SELECT a.id FROM Alerta a WHERE a.usuario.id = :usuarioId) "
+            + "AND c.vehiculo.id IN (SELECT v.id FROM Vehiculo v WHERE v.validada = true AND v.reservado = false)")
+    int marcarNotificadas(@Param("usuarioId") Long usuarioId, @Param("hasta") Long hasta);
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CoincidenciaAlerta c WHERE c.alerta.id = :alertaId")
+    int borrarDeAlerta(@Param("alertaId") Long alertaId);
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CoincidenciaAlerta c WHERE c.vehiculo.id = :vehiculoId")
+    int borrarDeVehiculo(@Param("vehiculoId") Long vehiculoId);
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CoincidenciaAlerta c WHERE c.vehiculo.id = :vehiculoId AND c.alerta.id NOT IN :alertaIds")
+    int borrarDeVehiculoSalvo(@Param("vehiculoId") Long vehiculoId, @Param("alertaIds") Collection<Long> alertaIds);
+}
@@ -0,0 +1,37 @@
+package com.appCasa.app.repositorio;
+
+import com.appCasa.app.modelo.CorreoPendiente;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CorreoPendienteRepository extends JpaRepository<CorreoPendiente, Long> {
+    // FOR UPDATE SKIP LOCKED: cada hilo de envío se lleva un lote distinto.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT c FROM CorreoPendiente c WHERE c.enviado IS NULL AND c.descartado IS NULL "
+            + "AND c.siguienteIntento <= :ahora ORDER BY c.id")
+    List<CorreoPendiente> findPendientes(@Param("ahora") LocalDateTime ahora, Limit limite);
+    long countByEnviadoIsNullAndDescartadoIsNull();
+    long countByDescartadoIsNotNull();
+    long countByEnviadoAfter(LocalDateTime desde);
+    @Query("SELECT MIN(c.creado) FROM CorreoPendiente c WHERE c.enviado IS NULL AND c.descartado IS NULL")
+    LocalDateTime findCreadoMasAntiguoPendiente();
+    @Modifying
+    @Query("UPDATE CorreoPendiente c SET c.descartado = NULL, c.intentos = 0, c.siguienteIntento = :ahora "
+            + "WHERE c.descartado IS NOT NULL")
+    int reactivarDescartados(@Param("ahora") LocalDateTime ahora);
+    @Modifying
+    @Query("DELETE FROM CorreoPendiente c WHERE c.enviado < :antesDe")
+    int borrarEnviados(@Param("antesDe") LocalDateTime antesDe);
+}
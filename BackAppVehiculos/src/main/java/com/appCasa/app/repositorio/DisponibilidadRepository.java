@@ -3,11 +3,41 @@ package com.appCasa.app.repositorio;
 import com.appCasa.app.modelo.Disponibilidad;
 import com.appCasa.app.modelo.Vehiculo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
 public interface DisponibilidadRepository extends JpaRepository<Disponibilidad, Long> {
     List<Disponibilidad> findByVehiculo(Vehiculo vehiculo);
+    List<Disponibilidad> findByVehiculoIdOrderByMotivoAscFechaInicioAsc(Long vehiculoId);
+    @Query("SELECT d FROM Disponibilidad d WHERE d.vehiculo.id = :vehiculoId AND d.motivo = :motivo "
+            + "AND d.fechaInicio <= :fin AND d.fechaFin >= :inicio ORDER BY d.fechaInicio")
+    List<Disponibilidad> findContiguas(@Param("vehiculoId") Long vehiculoId,
+                                       @Param("motivo") String motivo,
+                                       @Param("inicio") LocalDate inicio,
+                                       @Param("fin") LocalDate fin);
+    @Query("SELECT d FROM Disponibilidad d WHERE d.vehiculo.id = :vehiculoId AND d.motivo = :motivo "
+            + "AND d.fechaInicio < :fin AND d.fechaFin > :inicio ORDER BY d.fechaInicio")
+    List<Disponibilidad> findSolapadasConMotivo(@Param("vehiculoId") Long vehiculoId,
+                                                @Param("motivo") String motivo,
+                                                @Param("inicio") LocalDate inicio,
+                                                @Param("fin") LocalDate fin);
+    @Query("SELECT DISTINCT a.vehiculo.id FROM Disponibilidad a, Disponibilidad b "
+            + "WHERE b.vehiculo = a.vehiculo AND b.motivo = a.motivo AND b.id <> a.id "
+            + "AND b.fechaInicio <= a.fechaFin AND b.fechaFin >= a.fechaInicio")
+    List<Long> findVehiculosConBloquesFusionables();
+    @Query("SELECT COUNT(d) > 0 FROM Disponibilidad d WHERE d.vehiculo.id = :vehiculoId "
+            + "AND d.fechaInicio < :fin AND d.fechaFin > :inicio")
+    boolean existeSolape(@Param("vehiculoId") Long vehiculoId,
+                         @Param("inicio") LocalDate inicio,
+                         @Param("fin") LocalDate fin);
+    @Query("SELECT d FROM Disponibilidad d WHERE d.vehiculo.id = :vehiculoId "
+            + "AND d.fechaFin > :desde ORDER BY d.fechaInicio")
+    List<Disponibilidad> findProximas(@Param("vehiculoId") Long vehiculoId, @Param("desde") LocalDate desde);
+    @Query("SELECT DISTINCT d.vehiculo.id FROM Disponibilidad d WHERE d.fechaFin > :inicio AND d.fechaInicio < :fin")
+    List<Long> findVehiculosOcupados(@Param("inicio") LocalDate inicio, @Param("fin") LocalDate fin);
 }
@@ -0,0 +1,34 @@
+package com.appCasa.app.repositorio;
+
+import com.appCasa.app.modelo.EventoReserva;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EventoReservaRepository extends JpaRepository<EventoReserva, Long> {
+    @Query("SELECT e.id FROM EventoReserva e WHERE e.procesado IS NULL "
+            + "AND e.siguienteIntento <= :ahora ORDER BY e.id")
+    List<Long> findIdsPendientes(@Param("ahora") LocalDateTime ahora, Limit limite);
+    // Tiempo de espera -2: FOR UPDATE SKIP LOCKED, para que dos instancias no cojan el mismo evento.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM EventoReserva e WHERE e.id = :id AND e.procesado IS NULL "
+            + "AND e.siguienteIntento <= :ahora")
+    Optional<EventoReserva> findPendienteParaDespachar(@Param("id") Long id, @Param("ahora") LocalDateTime ahora);
+    long countByProcesadoIsNull();
+    long countByProcesadoIsNotNullAndUltimoErrorIsNotNull();
+    @Modifying
+    @Query("DELETE FROM EventoReserva e WHERE e.procesado < :antesDe AND e.ultimoError IS NULL")
+    int borrarProcesados(@Param("antesDe") LocalDateTime antesDe);
+}
@@ -1,13 +1,45 @@
 package com.appCasa.app.repositorio;
 
+import com.appCasa.app.modelo.ExpiracionReserva;
 import com.appCasa.app.modelo.Vehiculo;
 import com.appCasa.app.modelo.Reserva;
+import java.time.LocalDate;
 import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ReservaRepository extends JpaRepository<Reserva, Long> {
     void deleteByVehiculo(Vehiculo vehiculo);
     List<Reserva> findByVehiculo(Vehiculo vehiculo);
-}
\ No newline at end of file
+    @Query("SELECT COUNT(r) > 0 FROM Reserva r WHERE r.vehiculo.id = :vehiculoId "
+            + "AND r.fechaInicio < :fin AND r.fechaFin > :inicio")
+    boolean existeSolape(@Param("vehiculoId") Long vehiculoId,
+                         @Param("inicio") LocalDate inicio,
+                         @Param("fin") LocalDate fin);
+    @Query("SELECT r FROM Reserva r WHERE r.vehiculo.id = :vehiculoId "
+            + "AND r.fechaFin > :desde ORDER BY r.fechaInicio")
+    List<Reserva> findProximas(@Param("vehiculoId") Long vehiculoId, @Param("desde") LocalDate desde);
+    @Query("SELECT DISTINCT r.vehiculo.id FROM Reserva r WHERE r.fechaFin > :inicio AND r.fechaInicio < :fin")
+    List<Long> findVehiculosOcupados(@Param("inicio") LocalDate inicio, @Param("fin") LocalDate fin);
+    @Query("SELECT new com.appCasa.app.modelo.ExpiracionReserva(r.id, r.fechaExpiracion) FROM Reserva r "
+            + "WHERE r.fechaExpiracion IS NOT NULL AND r.confirmado = false AND r.vehiculo.reservado = true")
+    List<ExpiracionReserva> findExpiracionesPendientes();
+    @Query("SELECT r FROM Reserva r JOIN FETCH r.vehiculo v JOIN FETCH v.usuario JOIN FETCH r.usuario "
+            + "WHERE v.usuario.id = :propietarioId AND (:confirmado IS NULL OR r.confirmado = :confirmado) "
+            + "AND (:antesDe IS NULL OR r.id < :antesDe) ORDER BY r.id DESC")
+    List<Reserva> findDeVehiculosDelDueño(@Param("propietarioId") Long propietarioId,
+                                          @Param("confirmado") Boolean confirmado,
+                                          @Param("antesDe") Long antesDe,
+                                          Limit limite);
+    @Query("SELECT r FROM Reserva r JOIN FETCH r.vehiculo v JOIN FETCH v.usuario JOIN FETCH r.usuario u "
+            + "WHERE u.id = :usuarioId AND (:confirmado IS NULL OR r.confirmado = :confirmado) "
+            + "AND (:antesDe IS NULL OR r.id < :antesDe) ORDER BY r.id DESC")
+    List<Reserva> findDeUsuario(@Param("usuarioId") Long usuarioId,
+                                @Param("confirmado") Boolean confirmado,
+                                @Param("antesDe") Long antesDe,
+                                Limit limite);
+}
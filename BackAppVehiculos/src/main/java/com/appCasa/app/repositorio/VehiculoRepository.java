@@ -1,14 +1,22 @@
 package com.appCasa.app.repositorio;
 
+import com.appCasa.app.modelo.ResumenVehiculo;
+import com.appCasa.app.modelo.Sugerencia;
 import com.appCasa.app.modelo.Vehiculo;
 import com.appCasa.app.modelo.TipoOperacion;
 import com.appCasa.app.modelo.Usuario;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface VehiculoRepository extends JpaRepository<Vehiculo, Long>, JpaSpecificationExecutor<Vehiculo> {
@@ -21,5 +29,30 @@ public interface VehiculoRepository extends JpaRepository<Vehiculo, Long>, JpaSp
             TipoOperacion tipoOperacion,
             Long id);
     boolean existsByMatriculaAndTipoOperacion(String matricula, TipoOperacion tipoOperacion);
+    @Query("SELECT new com.appCasa.app.modelo.ResumenVehiculo(v.id, v.ubicacion, v.marca, v.modelo, v.año, "
+            + "v.kilometraje, v.capacidadPasajeros, v.precioTotal, v.precioPorDia, v.tipoOperacion) "
+            + "FROM Vehiculo v WHERE v.validada = true AND v.id > :desde ORDER BY v.id")
+    List<ResumenVehiculo> findResumenesValidados(@Param("desde") Long desde, Limit limite);
+    @Query("SELECT new com.appCasa.app.modelo.Sugerencia(v.marca, COUNT(v)) FROM Vehiculo v "
+            + "WHERE v.validada = true AND LOWER(v.marca) LIKE :prefijo GROUP BY v.marca ORDER BY COUNT(v) DESC")
+    List<Sugerencia> sugerirMarcas(@Param("prefijo") String prefijo, Limit limite);
+    @Query("SELECT new com.appCasa.app.modelo.Sugerencia(v.modelo, COUNT(v)) FROM Vehiculo v "
+            + "WHERE v.validada = true AND LOWER(v.modelo) LIKE :prefijo GROUP BY v.modelo ORDER BY COUNT(v) DESC")
+    List<Sugerencia> sugerirModelos(@Param("prefijo") String prefijo, Limit limite);
+    @Query("SELECT new com.appCasa.app.modelo.Sugerencia(v.ubicacion, COUNT(v)) FROM Vehiculo v "
+            + "WHERE v.validada = true AND LOWER(v.ubicacion) LIKE :prefijo GROUP BY v.ubicacion ORDER BY COUNT(v) DESC")
+    List<Sugerencia> sugerirUbicaciones(@Param("prefijo") String prefijo, Limit limite);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM Vehiculo v WHERE v.id = :id")
+    Optional<Vehiculo> findByIdParaReservar(@Param("id") Long id);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM Vehiculo v WHERE v.id IN :ids ORDER BY v.id")
+    List<Vehiculo> findAllParaReservar(@Param("ids") Collection<Long> ids);
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Vehiculo v SET v.reservado = true, v.disponible = false WHERE v.id = :id AND v.reservado = false")
+    int retenerParaVenta(@Param("id") Long id);
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Vehiculo v SET v.reservado = false, v.disponible = true WHERE v.id = :id AND v.reservado = true")
+    int liberarRetencionVenta(@Param("id") Long id);
 
 }
\ No newline at end of file
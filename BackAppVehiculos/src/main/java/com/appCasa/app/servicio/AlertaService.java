@@ -1,12 +1,15 @@
 package com.appCasa.app.servicio;
 
+import com.appCasa.app.indice.IndiceAlertas;
 import com.appCasa.app.modelo.Alerta;
 import com.appCasa.app.modelo.Vehiculo;
-import com.appCasa.app.modelo.TipoOperacion;
 import com.appCasa.app.modelo.Usuario;
 import com.appCasa.app.repositorio.AlertaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -16,87 +19,69 @@ public class AlertaService {
     private AlertaRepository alertaRepository;
 
     @Autowired
-    private EmailService emailService;
+    private IndiceAlertas indiceAlertas;
+
+    @Autowired
+    private CoincidenciasAlertaService coincidenciasAlertaService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarIndice() {
+        indiceAlertas.cargar(alertaRepository.findByActivaTrue());
+    }
 
     public Alerta crearAlerta(Alerta alerta) {
         alerta.setActiva(true);
-        return alertaRepository.save(alerta);
+        Alerta guardada = alertaRepository.save(alerta);
+        indiceAlertas.poner(guardada);
+        coincidenciasAlertaService.programarRelleno(guardada.getId());
+        return guardada;
     }
 
     public List<Alerta> obtenerAlertasPorUsuario(Usuario usuario) {
         return alertaRepository.findByUsuario(usuario);
     }
 
+    /** Las alertas sin usuario solo las puede gestionar un administrador. */
+    public static boolean esDeUsuario(Alerta alerta, Usuario usuario) {
+        return alerta.getUsuario() != null && alerta.getUsuario().getId().equals(usuario.getId());
+    }
+
+    public Alerta buscarAlerta(Long id) {
+        return alertaRepository.findById(id).orElse(null);
+    }
+
     public void eliminarAlerta(Long id, Usuario usuario) {
         Alerta alerta = alertaRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Alerta no encontrada"));
 
-        if (!alerta.getUsuario().getId().equals(usuario.getId()) && !usuario.getRol().equals("ADMIN")) {
+        if (!esDeUsuario(alerta, usuario) && !usuario.getRol().equals("ADMIN")) {
             throw new RuntimeException("No autorizado para eliminar esta alerta.");
         }
 
+        indiceAlertas.quitar(alerta.getId());
+        coincidenciasAlertaService.borrarDeAlerta(alerta.getId());
         alertaRepository.delete(alerta);
     }
 
     public void comprobarAlertasYNotificar(Vehiculo vehiculo) {
-        /*List<Alerta> alertas = alertaRepository.findAll();
-
-        for (Alerta alerta : alertas) {
-            boolean coincide = true;
-
-            if (alerta.getUbicacion() != null &&
-                    !vehiculo.getUbicacion().toLowerCase().contains(alerta.getUbicacion().toLowerCase())) {
-                coincide = false;
-            }
-
-            if (alerta.getMarca() != null &&
-                    !vehiculo.getMarca().equalsIgnoreCase(alerta.getMarca())) {
-                coincide = false;
-            }
-
-            if (alerta.getPrecioMax() != null &&
-                    vehiculo.getPrecioTotal() > alerta.getPrecioMax()) {
-                coincide = false;
-            }
-
-            if (alerta.getAñoMin() != null &&
-                    vehiculo.getAño() < alerta.getAñoMin()) {
-                coincide = false;
-            }
-
-            if (alerta.getAñoMax() != null &&
-                    vehiculo.getAño() > alerta.getAñoMax()) {
-                coincide = false;
-            }
-
-            if (alerta.getKilometrajeMax() != null &&
-                    vehiculo.getKilometraje() > alerta.getKilometrajeMax()) {
-                coincide = false;
-            }
-
-            if (alerta.getTipoOperacion() != null &&
-                    !alerta.getTipoOperacion().equals(vehiculo.getTipoOperacion())) {
-                coincide = false;
-            }
-
-            if (coincide) {
-                try {
-                    String asunto = "Nuevo vehículo que coincide con tu alerta";
-                    String cuerpo = "<h3>¡Buenas noticias!</h3>"
-                            + "<p>Se ha publicado un nuevo vehículo que coincide con tu alerta:</p>"
-                            + "<ul>"
-                            + "<li><b>Marca/Modelo:</b> " + vehiculo.getMarca() + " " + vehiculo.getModelo() + "</li>"
-                            + "<li><b>Año:</b> " + vehiculo.getAño() + "</li>"
-                            + "<li><b>Kilometraje:</b> " + vehiculo.getKilometraje() + " km</li>"
-                            + "<li><b>Precio:</b> " + vehiculo.getPrecioTotal() + "€</li>"
-                            + "</ul>"
-                            + "<p>Accede a la plataforma para verlo.</p>";
+        comprobarAlertasYNotificar(List.of(vehiculo));
+    }
 
-                    emailService.enviarEmail(alerta.getUsuario().getEmail(), asunto, cuerpo);
-                } catch (Exception e) {
-                    System.out.println("❌ Error al enviar email de alerta: " + e.getMessage());
-                }
+    /**
+     * Guarda las coincidencias de los vehículos con las alertas y borra las que
+     * ya no se cumplen, por ejemplo tras cambiar el precio. El índice de
+     * alertas devuelve directamente las que coinciden; los avisos salen
+     * después, agrupados por usuario, en los resúmenes de alertas.
+     */
+    public void comprobarAlertasYNotificar(List<Vehiculo> vehiculos) {
+        List<CoincidenciasAlertaService.Par> pares = new ArrayList<>();
+        for (Vehiculo vehiculo : vehiculos) {
+            List<Long> alertaIds = indiceAlertas.coincidencias(vehiculo);
+            coincidenciasAlertaService.conservarSolo(vehiculo.getId(), alertaIds);
+            for (Long alertaId : alertaIds) {
+                pares.add(new CoincidenciasAlertaService.Par(alertaId, vehiculo.getId()));
             }
-        }*/
+        }
+        coincidenciasAlertaService.guardar(pares, false);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.indice.ColaExpiraciones;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Libera periódicamente las reservas de compra cuya fecha de expiración ya
+ * pasó. Cada lote se procesa en su propia transacción; si un lote falla se
+ * reintenta reserva a reserva para que una sola fila rota no bloquee al resto.
+ * Una reserva que sigue fallando se queda en la cola y se aparta con espera
+ * exponencial hasta que vuelva a tocarle.
+ */
+@Component
+public class BarridoExpiraciones {
+
+    private static final Logger log = LoggerFactory.getLogger(BarridoExpiraciones.class);
+
+    private static final int LOTE = 100;
+    private static final long ESPERA_INICIAL_SEGUNDOS = 60;
+    private static final long ESPERA_MAXIMA_SEGUNDOS = 3600;
+
+    private record Reintento(int intentos, Instant siguiente) {
+    }
+
+    @Autowired
+    private ColaExpiraciones colaExpiraciones;
+
+    @Autowired
+    private ReservaService reservaService;
+
+    /** Solo lo toca el hilo del planificador. */
+    private final Map<Long, Reintento> reintentos = new HashMap<>();
+
+    @Scheduled(fixedDelayString = "${app.reservas.expiracion.intervalo-ms:300000}",
+            initialDelayString = "${app.reservas.expiracion.intervalo-ms:300000}")
+    public void barrer() {
+        LocalDate hoy = LocalDate.now();
+        Instant ahora = Instant.now();
+        reintentos.keySet().removeIf(id -> !colaExpiraciones.contiene(id));
+        List<Long> lote = siguienteLote(hoy, ahora);
+        while (!lote.isEmpty()) {
+            try {
+                reservaService.expirarReservas(lote);
+                lote.forEach(reintentos::remove);
+            } catch (RuntimeException e) {
+                lote.forEach(id -> expirarUna(id, ahora));
+            }
+            lote = siguienteLote(hoy, ahora);
+        }
+    }
+
+    /**
+     * Las vencidas que no están esperando un reintento. Se piden tantas de más
+     * como reservas apartadas hay, para que estas no ocupen el lote entero.
+     */
+    private List<Long> siguienteLote(LocalDate hoy, Instant ahora) {
+        List<Long> vencidas = colaExpiraciones.vencidas(hoy, LOTE + reintentos.size());
+        return vencidas.stream()
+                .filter(id -> {
+                    Reintento reintento = reintentos.get(id);
+                    return reintento == null || !reintento.siguiente().isAfter(ahora);
+                })
+                .limit(LOTE)
+                .toList();
+    }
+
+    private void expirarUna(Long reservaId, Instant ahora) {
+        try {
+            reservaService.expirarReservas(List.of(reservaId));
+            reintentos.remove(reservaId);
+        } catch (RuntimeException e) {
+            Reintento anterior = reintentos.get(reservaId);
+            int intentos = anterior == null ? 1 : anterior.intentos() + 1;
+            long espera = Math.min(ESPERA_MAXIMA_SEGUNDOS, ESPERA_INICIAL_SEGUNDOS << Math.min(intentos - 1, 20));
+            reintentos.put(reservaId, new Reintento(intentos, ahora.plusSeconds(espera)));
+            log.warn("No se ha podido expirar la reserva {} (intento {}); se reintentará en {} s.",
+                    reservaId, intentos, espera, e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.appCasa.app.servicio;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cerrojos por vehículo repartidos en un número fijo de franjas: dos reservas
+ * del mismo vehículo se serializan, y las de vehículos distintos solo
+ * coinciden si caen en la misma franja. Dentro de una transacción el cerrojo
+ * se suelta al terminarla, después de que el calendario ya refleje el commit.
+ */
+@Component
+public class BloqueosVehiculo {
+
+    private static final int FRANJAS = 256;
+    private static final long ESPERA_MAXIMA_MS = 5_000;
+
+    private final ReentrantLock[] cerrojos = new ReentrantLock[FRANJAS];
+
+    public BloqueosVehiculo() {
+        for (int i = 0; i < FRANJAS; i++) {
+            cerrojos[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock cerrojo(Long vehiculoId) {
+        return cerrojos[franja(vehiculoId)];
+    }
+
+    private static int franja(Long vehiculoId) {
+        int h = vehiculoId.hashCode();
+        h ^= h >>> 16;
+        return (h * 0x9E3779B9 >>> 24) & (FRANJAS - 1);
+    }
+
+    public void bloquear(Long vehiculoId) {
+        ReentrantLock cerrojo = cerrojo(vehiculoId);
+        try {
+            if (!cerrojo.tryLock(ESPERA_MAXIMA_MS, TimeUnit.MILLISECONDS)) {
+                throw new ConflictoReservaException("El vehículo está recibiendo otra reserva. Inténtalo de nuevo.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("La reserva se ha interrumpido.", e);
+        }
+    }
+
+    public void bloquearHastaFinDeTransaccion(Long vehiculoId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Se necesita una transacción activa para bloquear el vehículo.");
+        }
+        bloquear(vehiculoId);
+        ReentrantLock cerrojo = cerrojo(vehiculoId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                cerrojo.unlock();
+            }
+        });
+    }
+
+    /**
+     * Bloquea varios vehículos a la vez. Las franjas se toman siempre en orden
+     * creciente para que dos lotes que comparten vehículos no se interbloqueen.
+     */
+    public void bloquearVariosHastaFinDeTransaccion(Collection<Long> vehiculoIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Se necesita una transacción activa para bloquear el vehículo.");
+        }
+        int[] franjas = vehiculoIds.stream().mapToInt(BloqueosVehiculo::franja).distinct().sorted().toArray();
+        List<ReentrantLock> tomados = new ArrayList<>(franjas.length);
+        try {
+            for (int franja : franjas) {
+                ReentrantLock cerrojo = cerrojos[franja];
+                if (!cerrojo.tryLock(ESPERA_MAXIMA_MS, TimeUnit.MILLISECONDS)) {
+                    throw new ConflictoReservaException("Alguno de los vehículos está recibiendo otra reserva. Inténtalo de nuevo.");
+                }
+                tomados.add(cerrojo);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tomados.forEach(ReentrantLock::unlock);
+            throw new RuntimeException("La reserva se ha interrumpido.", e);
+        } catch (RuntimeException e) {
+            tomados.forEach(ReentrantLock::unlock);
+            throw e;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                tomados.forEach(ReentrantLock::unlock);
+            }
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package com.appCasa.app.servicio;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché LRU de resultados de búsqueda (ids y cursor siguiente), acotada por el
+ * número total de ids guardados. Cada entrada recuerda la versión del catálogo
+ * con la que se calculó; cualquier escritura que afecte al catálogo sube la
+ * versión y deja inservibles todas las entradas anteriores.
+ */
+@Component
+public class CacheBusquedas {
+
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong versionCatalogo = new AtomicLong();
+    private final AtomicLong versionOcupacion = new AtomicLong();
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+    private long pesoTotal;
+
+    @Value("${app.busqueda.cache.capacidad:50000}")
+    private long capacidad;
+
+    record Entrada(List<Long> ids, String siguienteCursor, long version, long versionOcupacion) {
+        int peso() {
+            return ids.size() + 1;
+        }
+    }
+
+    public long version() {
+        return versionCatalogo.get();
+    }
+
+    public void invalidar() {
+        versionCatalogo.incrementAndGet();
+        invalidaciones.increment();
+    }
+
+    public long versionOcupacion() {
+        return versionOcupacion.get();
+    }
+
+    /**
+     * Solo deja inservibles las búsquedas por fechas; las demás no dependen de
+     * las reservas y siguen siendo válidas.
+     */
+    public void invalidarOcupacion() {
+        versionOcupacion.incrementAndGet();
+    }
+
+    private boolean caducada(long version, long versionOcupacionEntrada) {
+        return version != versionCatalogo.get()
+                || versionOcupacionEntrada >= 0 && versionOcupacionEntrada != versionOcupacion.get();
+    }
+
+    public synchronized Entrada obtener(String clave) {
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null && caducada(entrada.version(), entrada.versionOcupacion())) {
+            entradas.remove(clave);
+            pesoTotal -= entrada.peso();
+            entrada = null;
+        }
+        if (entrada == null) {
+            fallos.increment();
+        } else {
+            aciertos.increment();
+        }
+        return entrada;
+    }
+
+    /**
+     * {@code versionOcupacion} es negativa si el resultado no depende de las
+     * reservas.
+     */
+    public synchronized void guardar(String clave, List<Long> ids, String siguienteCursor,
+                                     long version, long versionOcupacion) {
+        if (caducada(version, versionOcupacion)) {
+            return;
+        }
+        Entrada nueva = new Entrada(List.copyOf(ids), siguienteCursor, version, versionOcupacion);
+        Entrada anterior = entradas.put(clave, nueva);
+        if (anterior != null) {
+            pesoTotal -= anterior.peso();
+        }
+        pesoTotal += nueva.peso();
+
+        Iterator<Entrada> masAntiguas = entradas.values().iterator();
+        while (pesoTotal > capacidad && masAntiguas.hasNext()) {
+            pesoTotal -= masAntiguas.next().peso();
+            masAntiguas.remove();
+            desalojos.increment();
+        }
+    }
+
+    public synchronized Map<String, Object> estadisticas() {
+        long totalAciertos = aciertos.sum();
+        long consultas = totalAciertos + fallos.sum();
+        return Map.of(
+                "entradas", entradas.size(),
+                "peso", pesoTotal,
+                "capacidad", capacidad,
+                "aciertos", totalAciertos,
+                "fallos", fallos.sum(),
+                "tasaAciertos", consultas == 0 ? 0.0 : (double) totalAciertos / consultas,
+                "desalojos", desalojos.sum(),
+                "invalidaciones", invalidaciones.sum(),
+                "versionCatalogo", versionCatalogo.get(),
+                "versionOcupacion", versionOcupacion.get());
+    }
+}
@@ -0,0 +1,206 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.indice.IndiceAlertas;
+import com.appCasa.app.modelo.Alerta;
+import com.appCasa.app.modelo.CoincidenciaAlerta;
+import com.appCasa.app.modelo.CursorPaginacion;
+import com.appCasa.app.modelo.PaginaVehiculos;
+import com.appCasa.app.modelo.ResumenVehiculo;
+import com.appCasa.app.modelo.Vehiculo;
+import com.appCasa.app.repositorio.AlertaRepository;
+import com.appCasa.app.repositorio.CoincidenciaAlertaRepository;
+import com.appCasa.app.repositorio.VehiculoRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vehículos que coinciden con cada alerta. Al crear una alerta se recorre en
+ * segundo plano el catálogo ya publicado, por lotes de resúmenes ordenados por
+ * id, y se guardan las coincidencias; las de vehículos publicados después las
+ * añade la evaluación de alertas. La alerta queda marcada cuando termina el
+ * recorrido, y las que se quedaron a medias se retoman al arrancar y
+ * periódicamente. Cuando se vuelve a evaluar un vehículo se borran las
+ * coincidencias con alertas que ya no acepta, y las de un vehículo que deja de
+ * estar validado se borran al guardarlo; al listar se omiten además los
+ * vehículos no validados o retenidos por una reserva de compra.
+ */
+@Service
+public class CoincidenciasAlertaService {
+
+    public record Par(long alertaId, long vehiculoId) {
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CoincidenciasAlertaService.class);
+
+    private static final int LOTE = 500;
+    private static final int CAPACIDAD_COLA = 1_000;
+
+    @Autowired
+    private AlertaRepository alertaRepository;
+    @Autowired
+    private VehiculoRepository vehiculoRepository;
+    @Autowired
+    private CoincidenciaAlertaRepository coincidenciaAlertaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.alertas.pagina.por-defecto:50}")
+    private int tamañoPaginaPorDefecto;
+
+    @Value("${app.alertas.pagina.maximo:100}")
+    private int tamañoPaginaMaximo;
+
+    private final Set<Long> programadas = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor ejecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(CAPACIDAD_COLA), tarea -> {
+                Thread hilo = new Thread(tarea, "relleno-alertas");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+
+    @PreDestroy
+    void parar() {
+        ejecutor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.alertas.relleno.intervalo-ms:600000}",
+            initialDelayString = "${app.alertas.relleno.intervalo-ms:600000}")
+    public void retomarPendientes() {
+        alertaRepository.findPendientesDeCoincidencias().forEach(this::programarRelleno);
+    }
+
+    /**
+     * Encola el recorrido del catálogo para la alerta. Si la cola está llena
+     * no se espera: la alerta sigue pendiente y la recoge la siguiente pasada.
+     */
+    public void programarRelleno(Long alertaId) {
+        if (!programadas.add(alertaId)) {
+            return;
+        }
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    rellenar(alertaId);
+                } catch (RuntimeException e) {
+                    // La alerta sigue pendiente y la retoma la siguiente pasada.
+                    log.warn("No se han podido cargar las coincidencias de la alerta {}.", alertaId, e);
+                } finally {
+                    programadas.remove(alertaId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            programadas.remove(alertaId);
+        }
+    }
+
+    /**
+     * Las coincidencias de vehículos nuevos se guardan sin notificar para que
+     * entren en el siguiente resumen; las del recorrido del catálogo ya
+     * publicado no se envían por correo, solo se consultan.
+     */
+    public void guardar(List<Par> coincidencias, boolean notificadas) {
+        if (coincidencias.isEmpty()) {
+            return;
+        }
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        // INSERT IGNORE: una coincidencia ya guardada (por el recorrido o por la evaluación) no se duplica.
+        jdbcTemplate.batchUpdate(
+                "INSERT IGNORE INTO coincidencias_alerta (alerta_id, vehiculo_id, fecha, notificada) VALUES (?, ?, ?, ?)",
+                coincidencias, coincidencias.size(), (ps, par) -> {
+                    ps.setLong(1, par.alertaId());
+                    ps.setLong(2, par.vehiculoId());
+                    ps.setTimestamp(3, ahora);
+                    ps.setBoolean(4, notificadas);
+                });
+    }
+
+    /** Coincidencias de una alerta, de la más reciente a la más antigua. */
+    public PaginaVehiculos coincidencias(Long alertaId, String cursor, Integer tamaño) {
+        int limite = tamaño == null || tamaño <= 0 ? tamañoPaginaPorDefecto : Math.min(tamaño, tamañoPaginaMaximo);
+        CursorPaginacion desde = CursorPaginacion.decodificar(cursor);
+        List<CoincidenciaAlerta> filas = coincidenciaAlertaRepository.findDeAlerta(alertaId,
+                desde != null ? desde.getId() : null, Limit.of(limite + 1));
+        String siguiente = null;
+        if (filas.size() > limite) {
+            filas = filas.subList(0, limite);
+            siguiente = new CursorPaginacion(null, filas.get(limite - 1).getId()).codificar();
+        }
+        List<Vehiculo> vehiculos = filas.stream().map(CoincidenciaAlerta::getVehiculo).toList();
+        return new PaginaVehiculos(vehiculos, siguiente);
+    }
+
+    public void borrarDeAlerta(Long alertaId) {
+        coincidenciaAlertaRepository.borrarDeAlerta(alertaId);
+    }
+
+    public void borrarDeVehiculo(Long vehiculoId) {
+        coincidenciaAlertaRepository.borrarDeVehiculo(vehiculoId);
+    }
+
+    /** Borra las coincidencias del vehículo con alertas que ya no lo aceptan. */
+    public void conservarSolo(Long vehiculoId, Collection<Long> alertaIds) {
+        if (alertaIds.isEmpty()) {
+            coincidenciaAlertaRepository.borrarDeVehiculo(vehiculoId);
+        } else {
+            coincidenciaAlertaRepository.borrarDeVehiculoSalvo(vehiculoId, alertaIds);
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        return Map.of(
+                "enCola", ejecutor.getQueue().size(),
+                "enCurso", ejecutor.getActiveCount(),
+                "completadas", ejecutor.getCompletedTaskCount());
+    }
+
+    private void rellenar(Long alertaId) {
+        Alerta alerta = alertaRepository.findById(alertaId).orElse(null);
+        if (alerta == null || !Boolean.TRUE.equals(alerta.getActiva())) {
+            return;
+        }
+        Long desde = 0L;
+        List<ResumenVehiculo> lote;
+        do {
+            lote = vehiculoRepository.findResumenesValidados(desde, Limit.of(LOTE));
+            List<Par> coincidencias = new ArrayList<>();
+            for (ResumenVehiculo vehiculo : lote) {
+                if (IndiceAlertas.acepta(alerta, vehiculo)) {
+                    coincidencias.add(new Par(alertaId, vehiculo.getId()));
+                }
+            }
+            if (!coincidencias.isEmpty()) {
+                if (!alertaRepository.existsById(alertaId)) {
+                    return;
+                }
+                guardar(coincidencias, true);
+            }
+            if (!lote.isEmpty()) {
+                desde = lote.get(lote.size() - 1).getId();
+            }
+        } while (lote.size() == LOTE);
+        alertaRepository.marcarCoincidenciasCargadas(alertaId);
+    }
+}
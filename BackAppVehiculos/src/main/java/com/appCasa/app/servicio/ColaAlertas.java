@@ -0,0 +1,183 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.modelo.Vehiculo;
+import com.appCasa.app.repositorio.VehiculoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vehículos pendientes de comprobar contra las alertas, fuera del hilo que
+ * los guarda. Un vehículo que se vuelve a guardar mientras espera no se
+ * encola dos veces, y un hilo de fondo los evalúa en lotes. Si la cola está
+ * llena, quien encola evalúa el vehículo él mismo: así la cola no crece sin
+ * límite y no se pierde ningún aviso. Un lote que falla vuelve a la cola y el
+ * hilo espera, cada vez más, antes de seguir; un vehículo que falla
+ * {@value #MAXIMO_INTENTOS} veces seguidas se descarta.
+ */
+@Component
+public class ColaAlertas {
+
+    private static final Logger log = LoggerFactory.getLogger(ColaAlertas.class);
+
+    private static final int LOTE = 100;
+    private static final int MAXIMO_INTENTOS = 5;
+    private static final long ESPERA_INICIAL_MS = 1_000;
+    private static final long ESPERA_MAXIMA_MS = 60_000;
+
+    private final LinkedHashMap<Long, Long> pendientes = new LinkedHashMap<>();
+    private final Map<Long, Integer> intentos = new HashMap<>();
+    private int fallosSeguidos;
+    private long encolados;
+    private long fusionados;
+    private long enLinea;
+    private long evaluados;
+    private long errores;
+    private long descartados;
+    private long ultimoRetrasoMs;
+    private Thread trabajador;
+
+    @Value("${app.alertas.cola.capacidad:10000}")
+    private int capacidad;
+
+    @Autowired
+    private VehiculoRepository vehiculoRepository;
+
+    @Autowired
+    private AlertaService alertaService;
+
+    @PostConstruct
+    void arrancar() {
+        trabajador = new Thread(this::atender, "evaluador-alertas");
+        trabajador.setDaemon(true);
+        trabajador.start();
+    }
+
+    @PreDestroy
+    void parar() {
+        trabajador.interrupt();
+    }
+
+    public void encolar(Long vehiculoId) {
+        synchronized (this) {
+            if (pendientes.containsKey(vehiculoId)) {
+                fusionados++;
+                return;
+            }
+            if (pendientes.size() < capacidad) {
+                pendientes.put(vehiculoId, System.currentTimeMillis());
+                encolados++;
+                notifyAll();
+                return;
+            }
+            enLinea++;
+        }
+        evaluar(List.of(vehiculoId));
+    }
+
+    public synchronized Map<String, Object> estadisticas() {
+        long retrasoMs = pendientes.isEmpty() ? 0
+                : System.currentTimeMillis() - pendientes.values().iterator().next();
+        return Map.of(
+                "profundidad", pendientes.size(),
+                "capacidad", capacidad,
+                "retrasoMs", retrasoMs,
+                "ultimoRetrasoMs", ultimoRetrasoMs,
+                "encolados", encolados,
+                "fusionados", fusionados,
+                "evaluadosEnLinea", enLinea,
+                "evaluados", evaluados,
+                "errores", errores,
+                "descartados", descartados);
+    }
+
+    private void atender() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Long> lote;
+            try {
+                lote = siguienteLote();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long espera = 0;
+            try {
+                evaluar(lote);
+                anotarExito(lote);
+            } catch (RuntimeException e) {
+                espera = reencolar(lote);
+                log.warn("No se han podido evaluar las alertas de {} vehículos; se reintentará en {} ms.",
+                        lote.size(), espera, e);
+            }
+            if (espera > 0) {
+                try {
+                    Thread.sleep(espera);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private synchronized void anotarExito(List<Long> lote) {
+        fallosSeguidos = 0;
+        lote.forEach(intentos::remove);
+    }
+
+    /**
+     * Devuelve el lote fallido a la cola, salvo los vehículos que ya agotaron
+     * los intentos, y calcula la espera antes del siguiente lote.
+     */
+    private synchronized long reencolar(List<Long> lote) {
+        errores++;
+        long ahora = System.currentTimeMillis();
+        for (Long vehiculoId : lote) {
+            int intento = intentos.merge(vehiculoId, 1, Integer::sum);
+            if (intento >= MAXIMO_INTENTOS) {
+                intentos.remove(vehiculoId);
+                descartados++;
+                log.error("Se descarta el vehículo {} de la cola de alertas tras {} intentos.", vehiculoId, intento);
+            } else {
+                pendientes.putIfAbsent(vehiculoId, ahora);
+            }
+        }
+        fallosSeguidos++;
+        return Math.min(ESPERA_MAXIMA_MS, ESPERA_INICIAL_MS << Math.min(fallosSeguidos - 1, 20));
+    }
+
+    private synchronized List<Long> siguienteLote() throws InterruptedException {
+        while (pendientes.isEmpty()) {
+            wait();
+        }
+        long ahora = System.currentTimeMillis();
+        List<Long> lote = new ArrayList<>(Math.min(LOTE, pendientes.size()));
+        Iterator<Map.Entry<Long, Long>> it = pendientes.entrySet().iterator();
+        while (it.hasNext() && lote.size() < LOTE) {
+            Map.Entry<Long, Long> entrada = it.next();
+            lote.add(entrada.getKey());
+            ultimoRetrasoMs = ahora - entrada.getValue();
+            it.remove();
+        }
+        return lote;
+    }
+
+    private void evaluar(List<Long> vehiculoIds) {
+        List<Vehiculo> validados = vehiculoRepository.findAllById(vehiculoIds).stream()
+                .filter(v -> Boolean.TRUE.equals(v.getValidada()))
+                .toList();
+        alertaService.comprobarAlertasYNotificar(validados);
+        synchronized (this) {
+            evaluados += validados.size();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.appCasa.app.servicio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Funde de madrugada los bloques de disponibilidad que se han quedado
+ * contiguos o solapados, por ejemplo los que entran por las reservas en lote.
+ * Solo visita los vehículos que tienen algo que fundir, y cada uno en su
+ * propia transacción.
+ */
+@Component
+public class CompactacionDisponibilidad {
+
+    private static final Logger log = LoggerFactory.getLogger(CompactacionDisponibilidad.class);
+
+    @Autowired
+    private DisponibilidadService disponibilidadService;
+
+    @Scheduled(cron = "${app.disponibilidad.compactacion-cron:0 0 4 * * *}")
+    public void compactarProgramado() {
+        compactar();
+    }
+
+    public Map<String, Integer> compactar() {
+        List<Long> vehiculos = disponibilidadService.vehiculosConBloquesFusionables();
+        int filasEliminadas = 0;
+        for (Long vehiculoId : vehiculos) {
+            try {
+                filasEliminadas += disponibilidadService.compactarVehiculo(vehiculoId);
+            } catch (RuntimeException e) {
+                // Sus bloques siguen siendo fusionables: la próxima pasada lo vuelve a intentar.
+                log.warn("No se han podido compactar los bloques del vehículo {}.", vehiculoId, e);
+            }
+        }
+        return Map.of("vehiculos", vehiculos.size(), "filasEliminadas", filasEliminadas);
+    }
+}
@@ -0,0 +1,107 @@
+package com.appCasa.app.servicio;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Date;
+
+/**
+ * Conexión SMTP de un hilo de envío. Se abre con el primer correo y se
+ * reutiliza para los siguientes, así que el saludo, STARTTLS y la
+ * autenticación se pagan una vez por conexión y no una por correo. Si el
+ * servidor la ha cerrado, se abre otra y se reintenta el correo una vez. Si
+ * no se puede abrir, se lanza {@link SinConexionException} y el fallo queda
+ * anotado hasta la siguiente apertura correcta, para que quien envía pare el
+ * lote en lugar de intentar una conexión por correo.
+ */
+class ConexionSmtp implements AutoCloseable {
+
+    /** No se ha podido conectar: el fallo es del servidor, no del correo. */
+    static class SinConexionException extends MessagingException {
+
+        SinConexionException(MessagingException causa) {
+            super("No se puede conectar con el servidor SMTP: " + causa.getMessage(), causa);
+        }
+    }
+
+    private final JavaMailSenderImpl remitente;
+    private Transport transporte;
+    private volatile long aperturas;
+    private volatile MessagingException falloConexion;
+
+    ConexionSmtp(JavaMailSenderImpl remitente) {
+        this.remitente = remitente;
+    }
+
+    void enviar(MimeMessage mensaje) throws MessagingException {
+        if (mensaje.getSentDate() == null) {
+            mensaje.setSentDate(new Date());
+        }
+        mensaje.saveChanges();
+        boolean nueva = transporte == null;
+        if (nueva) {
+            abrir();
+        }
+        try {
+            transporte.sendMessage(mensaje, mensaje.getAllRecipients());
+        } catch (SendFailedException e) {
+            // El servidor rechazó destinatarios; la conexión sigue sirviendo.
+            throw e;
+        } catch (MessagingException e) {
+            close();
+            if (nueva) {
+                throw e;
+            }
+            abrir();
+            transporte.sendMessage(mensaje, mensaje.getAllRecipients());
+        }
+    }
+
+    long getAperturas() {
+        return aperturas;
+    }
+
+    /**
+     * El error de la última apertura fallida, o {@code null} si la última fue
+     * bien o la conexión se ha cerrado después.
+     */
+    MessagingException getFalloConexion() {
+        return falloConexion;
+    }
+
+    @Override
+    public void close() {
+        falloConexion = null;
+        if (transporte != null) {
+            try {
+                transporte.close();
+            } catch (MessagingException e) {
+                // Ya estaba cerrada por el otro lado.
+            }
+            transporte = null;
+        }
+    }
+
+    private void abrir() throws MessagingException {
+        String protocolo = remitente.getProtocol() != null ? remitente.getProtocol() : "smtp";
+        String usuario = remitente.getUsername();
+        String clave = remitente.getPassword();
+        if (usuario == null || usuario.isEmpty()) {
+            usuario = null;
+            clave = null;
+        }
+        Transport nuevo = remitente.getSession().getTransport(protocolo);
+        try {
+            nuevo.connect(remitente.getHost(), remitente.getPort(), usuario, clave);
+        } catch (MessagingException e) {
+            falloConexion = e;
+            throw new SinConexionException(e);
+        }
+        falloConexion = null;
+        transporte = nuevo;
+        aperturas++;
+    }
+}
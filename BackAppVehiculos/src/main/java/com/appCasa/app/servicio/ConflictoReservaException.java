@@ -0,0 +1,8 @@
+package com.appCasa.app.servicio;
+
+public class ConflictoReservaException extends RuntimeException {
+
+    public ConflictoReservaException(String mensaje) {
+        super(mensaje);
+    }
+}
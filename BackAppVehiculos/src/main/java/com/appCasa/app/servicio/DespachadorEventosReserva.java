@@ -0,0 +1,47 @@
+package com.appCasa.app.servicio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vacía periódicamente la bandeja de salida de reservas, lote a lote, cada
+ * evento en su propia transacción. Los eventos ya procesados sin error se
+ * borran pasados unos días; los que agotaron los reintentos se conservan para
+ * revisarlos. Si falla un lote entero, sus eventos siguen pendientes en la
+ * base de datos y se recogen en el ciclo siguiente.
+ */
+@Component
+public class DespachadorEventosReserva {
+
+    private static final Logger log = LoggerFactory.getLogger(DespachadorEventosReserva.class);
+
+    private static final int LOTE = 100;
+
+    @Autowired
+    private EventosReservaService eventosReservaService;
+
+    @Value("${app.eventos.retencion-dias:7}")
+    private int diasRetencion;
+
+    @Scheduled(fixedDelayString = "${app.eventos.intervalo-ms:2000}")
+    public void despachar() {
+        try {
+            while (eventosReservaService.despacharPendientes(LOTE) == LOTE) {
+                // Hay más pendientes: se sigue sin esperar al siguiente ciclo.
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se ha podido despachar la bandeja de eventos de reservas; se reintentará en el próximo ciclo.", e);
+        }
+    }
+
+    @Scheduled(cron = "${app.eventos.limpieza-cron:0 30 3 * * *}")
+    public void limpiar() {
+        eventosReservaService.borrarProcesados(LocalDateTime.now().minusDays(diasRetencion));
+    }
+}
@@ -1,34 +1,177 @@
 package com.appCasa.app.servicio;
 
+import com.appCasa.app.indice.CalendarioOcupacion;
+import com.appCasa.app.indice.IndiceDisponibilidad;
+import com.appCasa.app.modelo.CalendarioVehiculo;
 import com.appCasa.app.modelo.Disponibilidad;
+import com.appCasa.app.modelo.EstadoDia;
+import com.appCasa.app.modelo.Reserva;
+import com.appCasa.app.modelo.TramoCalendario;
 import com.appCasa.app.modelo.Vehiculo;
 import com.appCasa.app.repositorio.DisponibilidadRepository;
+import com.appCasa.app.repositorio.ReservaRepository;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 @Service
 public class DisponibilidadService {
 
+    private static final int MESES_CALENDARIO = 12;
+    private static final int MESES_CALENDARIO_MAXIMO = 24;
+
     @Autowired
     private DisponibilidadRepository disponibilidadRepository;
 
+    @Autowired
+    private ReservaRepository reservaRepository;
+
     @Autowired
     private VehiculoService vehiculoService;
 
+    @Autowired
+    private IndiceDisponibilidad indiceDisponibilidad;
+
+    @Autowired
+    private CacheBusquedas cacheBusquedas;
+
+    @Autowired
+    private BloqueosVehiculo bloqueosVehiculo;
+
+    @Transactional
     public Disponibilidad agregarDisponibilidad(Long vehiculoId, Disponibilidad disponibilidad) {
         Vehiculo vehiculo = vehiculoService.buscarPorId(vehiculoId);
         if (vehiculo == null) {
-            throw new RuntimeException("Vehículo no encontrado.");
+            throw new VehiculoNoEncontradoException();
+        }
+        validarRango(disponibilidad.getFechaInicio(), disponibilidad.getFechaFin());
+        if (disponibilidad.getMotivo() == null || disponibilidad.getMotivo().isBlank()) {
+            throw new RuntimeException("El motivo del bloqueo es obligatorio.");
         }
-        disponibilidad.setVehiculo(vehiculo);
-        return disponibilidadRepository.save(disponibilidad);
+        bloqueosVehiculo.bloquearHastaFinDeTransaccion(vehiculoId);
+        return bloquear(vehiculo, disponibilidad.getFechaInicio(), disponibilidad.getFechaFin(), disponibilidad.getMotivo());
+    }
+
+    /**
+     * Bloquea [inicio, fin) con el motivo dado. Los bloques del mismo motivo
+     * que se solapan con el rango o lo tocan se funden con él en una sola fila.
+     */
+    @Transactional
+    public Disponibilidad bloquear(Vehiculo vehiculo, LocalDate inicio, LocalDate fin, String motivo) {
+        List<Disponibilidad> contiguas = disponibilidadRepository.findContiguas(vehiculo.getId(), motivo, inicio, fin);
+        if (contiguas.isEmpty()) {
+            Disponibilidad bloque = disponibilidadRepository.save(new Disponibilidad(null, vehiculo, inicio, fin, motivo));
+            registrarBloque(bloque);
+            return bloque;
+        }
+        Disponibilidad bloque = contiguas.get(0);
+        LocalDate nuevoInicio = bloque.getFechaInicio().isBefore(inicio) ? bloque.getFechaInicio() : inicio;
+        LocalDate nuevoFin = fin;
+        for (Disponibilidad otra : contiguas) {
+            if (otra.getFechaFin().isAfter(nuevoFin)) {
+                nuevoFin = otra.getFechaFin();
+            }
+            if (otra != bloque) {
+                disponibilidadRepository.delete(otra);
+                quitarBloque(otra);
+            }
+        }
+        bloque.setFechaInicio(nuevoInicio);
+        bloque.setFechaFin(nuevoFin);
+        disponibilidadRepository.save(bloque);
+        registrarBloque(bloque);
+        return bloque;
+    }
+
+    /**
+     * Quita [inicio, fin) de los bloques con el motivo dado: los que quedan
+     * dentro se borran y los que lo cubren en parte se recortan o se parten en dos.
+     */
+    @Transactional
+    public void liberar(Vehiculo vehiculo, LocalDate inicio, LocalDate fin, String motivo) {
+        for (Disponibilidad bloque : disponibilidadRepository.findSolapadasConMotivo(vehiculo.getId(), motivo, inicio, fin)) {
+            boolean quedaAntes = bloque.getFechaInicio().isBefore(inicio);
+            boolean quedaDespues = bloque.getFechaFin().isAfter(fin);
+            if (!quedaAntes && !quedaDespues) {
+                disponibilidadRepository.delete(bloque);
+                quitarBloque(bloque);
+                continue;
+            }
+            if (quedaAntes && quedaDespues) {
+                Disponibilidad resto = disponibilidadRepository.save(
+                        new Disponibilidad(null, bloque.getVehiculo(), fin, bloque.getFechaFin(), motivo));
+                registrarBloque(resto);
+                bloque.setFechaFin(inicio);
+            } else if (quedaAntes) {
+                bloque.setFechaFin(inicio);
+            } else {
+                bloque.setFechaInicio(fin);
+            }
+            disponibilidadRepository.save(bloque);
+            registrarBloque(bloque);
+        }
+    }
+
+    public List<Long> vehiculosConBloquesFusionables() {
+        return disponibilidadRepository.findVehiculosConBloquesFusionables();
+    }
+
+    /**
+     * Funde los bloques contiguos o solapados del mismo motivo de un vehículo
+     * y devuelve cuántas filas sobraban.
+     */
+    @Transactional
+    public int compactarVehiculo(Long vehiculoId) {
+        bloqueosVehiculo.bloquearHastaFinDeTransaccion(vehiculoId);
+        List<Disponibilidad> sobrantes = new ArrayList<>();
+        List<Disponibilidad> ampliados = fusionar(
+                disponibilidadRepository.findByVehiculoIdOrderByMotivoAscFechaInicioAsc(vehiculoId), sobrantes);
+        for (Disponibilidad sobrante : sobrantes) {
+            disponibilidadRepository.delete(sobrante);
+            quitarBloque(sobrante);
+        }
+        for (Disponibilidad ampliado : ampliados) {
+            disponibilidadRepository.save(ampliado);
+            registrarBloque(ampliado);
+        }
+        return sobrantes.size();
+    }
+
+    /**
+     * Recorre los bloques por motivo y fecha de inicio alargando el primero de
+     * cada grupo contiguo. Los absorbidos se añaden a {@code sobrantes}; se
+     * devuelven los que han cambiado de fin.
+     */
+    static List<Disponibilidad> fusionar(List<Disponibilidad> bloques, List<Disponibilidad> sobrantes) {
+        List<Disponibilidad> ordenados = new ArrayList<>(bloques);
+        ordenados.sort(Comparator.comparing(Disponibilidad::getMotivo).thenComparing(Disponibilidad::getFechaInicio));
+        List<Disponibilidad> ampliados = new ArrayList<>();
+        Disponibilidad actual = null;
+        for (Disponibilidad bloque : ordenados) {
+            if (actual == null || !actual.getMotivo().equals(bloque.getMotivo())
+                    || bloque.getFechaInicio().isAfter(actual.getFechaFin())) {
+                actual = bloque;
+                continue;
+            }
+            if (bloque.getFechaFin().isAfter(actual.getFechaFin())) {
+                actual.setFechaFin(bloque.getFechaFin());
+                if (ampliados.isEmpty() || ampliados.get(ampliados.size() - 1) != actual) {
+                    ampliados.add(actual);
+                }
+            }
+            sobrantes.add(bloque);
+        }
+        return ampliados;
     }
 
     public List<Disponibilidad> listarDisponibilidadesPorVehiculo(Long vehiculoId) {
         Vehiculo vehiculo = vehiculoService.buscarPorId(vehiculoId);
         if (vehiculo == null) {
-            throw new RuntimeException("Vehículo no encontrado.");
+            throw new VehiculoNoEncontradoException();
         }
         return disponibilidadRepository.findByVehiculo(vehiculo);
     }
@@ -38,6 +181,182 @@ public class DisponibilidadService {
     }
 
     public void eliminarDisponibilidad(Long id) {
-        disponibilidadRepository.deleteById(id);
+        disponibilidadRepository.findById(id).ifPresent(disponibilidad -> {
+            disponibilidadRepository.delete(disponibilidad);
+            quitarBloque(disponibilidad);
+        });
+    }
+
+    /**
+     * Quita solo [inicio, fin) del bloque con ese id. Como un bloque nuevo se
+     * funde con los contiguos del mismo motivo, borrar la fila entera también
+     * quitaría las fechas que ya estaban bloqueadas; así se deshace únicamente
+     * el tramo que se añadió.
+     */
+    @Transactional
+    public void liberarDisponibilidad(Long id, LocalDate inicio, LocalDate fin) {
+        Disponibilidad bloque = disponibilidadRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Disponibilidad no encontrada."));
+        validarRango(inicio, fin);
+        if (inicio.isBefore(bloque.getFechaInicio()) || fin.isAfter(bloque.getFechaFin())) {
+            throw new RuntimeException("El rango a liberar debe estar dentro del bloque.");
+        }
+        bloqueosVehiculo.bloquearHastaFinDeTransaccion(bloque.getVehiculo().getId());
+        liberar(bloque.getVehiculo(), inicio, fin, bloque.getMotivo());
+    }
+
+    public void validarRango(LocalDate fechaInicio, LocalDate fechaFin) {
+        if (fechaInicio == null || fechaFin == null) {
+            throw new RuntimeException("Las fechas de inicio y fin son obligatorias.");
+        }
+        if (!fechaFin.isAfter(fechaInicio)) {
+            throw new RuntimeException("La fecha de fin debe ser posterior a la de inicio.");
+        }
+    }
+
+    public boolean estaLibre(Vehiculo vehiculo, LocalDate fechaInicio, LocalDate fechaFin) {
+        return !calendario(vehiculo.getId()).haySolape(dia(fechaInicio), dia(fechaFin));
+    }
+
+    /**
+     * Como {@link #estaLibre}, pero preguntando a la base de datos en lugar de
+     * al calendario en memoria, que en otra instancia puede ir por detrás. Solo
+     * es concluyente con la fila del vehículo bloqueada en la transacción.
+     */
+    public boolean estaLibreEnBaseDeDatos(Long vehiculoId, LocalDate fechaInicio, LocalDate fechaFin) {
+        return !reservaRepository.existeSolape(vehiculoId, fechaInicio, fechaFin)
+                && !disponibilidadRepository.existeSolape(vehiculoId, fechaInicio, fechaFin);
+    }
+
+    public CalendarioOcupacion calendario(Long vehiculoId) {
+        return indiceDisponibilidad.obtener(vehiculoId, this::cargarCalendario);
+    }
+
+    /**
+     * Calendario de ocupación desde {@code desde} (hoy si falta) durante
+     * {@code meses}. Un inicio anterior a hoy o un número de meses fuera de
+     * [1, {@value #MESES_CALENDARIO_MAXIMO}] se rechazan en lugar de ajustarse.
+     */
+    public CalendarioVehiculo calendarioVehiculo(Long vehiculoId, LocalDate desde, Integer meses) {
+        LocalDate hoy = LocalDate.now();
+        if (desde != null && desde.isBefore(hoy)) {
+            throw new RuntimeException("La fecha 'desde' no puede ser anterior a hoy.");
+        }
+        if (meses != null && (meses < 1 || meses > MESES_CALENDARIO_MAXIMO)) {
+            throw new RuntimeException("'meses' debe estar entre 1 y " + MESES_CALENDARIO_MAXIMO + ".");
+        }
+        LocalDate inicio = desde == null ? hoy : desde;
+        LocalDate fin = inicio.plusMonths(meses == null ? MESES_CALENDARIO : meses);
+        long primerDia = dia(inicio);
+        byte[] estados = new byte[(int) (dia(fin) - primerDia)];
+
+        for (CalendarioOcupacion.Tramo tramo : calendario(vehiculoId).tramosEntre(primerDia, dia(fin))) {
+            byte estado = (byte) estadoDe(tramo).ordinal();
+            int desdeDia = (int) (Math.max(tramo.inicio(), primerDia) - primerDia);
+            int hastaDia = (int) (Math.min(tramo.fin(), dia(fin)) - primerDia);
+            for (int i = desdeDia; i < hastaDia; i++) {
+                if (estados[i] < estado) {
+                    estados[i] = estado;
+                }
+            }
+        }
+
+        EstadoDia[] valores = EstadoDia.values();
+        List<TramoCalendario> tramos = new ArrayList<>();
+        int i = 0;
+        while (i < estados.length) {
+            int j = i + 1;
+            while (j < estados.length && estados[j] == estados[i]) {
+                j++;
+            }
+            if (estados[i] != EstadoDia.LIBRE.ordinal()) {
+                tramos.add(new TramoCalendario(inicio.plusDays(i), inicio.plusDays(j), valores[estados[i]]));
+            }
+            i = j;
+        }
+        return new CalendarioVehiculo(inicio, fin, tramos);
+    }
+
+    public void registrarReserva(Reserva reserva) {
+        if (reserva.getFechaInicio() == null || reserva.getFechaFin() == null) {
+            return;
+        }
+        CalendarioOcupacion.Tramo tramo = tramo(reserva);
+        Long vehiculoId = reserva.getVehiculo().getId();
+        TransaccionUtil.despuesDelCommit(() -> {
+            indiceDisponibilidad.poner(vehiculoId, tramo);
+            cacheBusquedas.invalidarOcupacion();
+        });
+    }
+
+    public void quitarReserva(Reserva reserva) {
+        Long vehiculoId = reserva.getVehiculo().getId();
+        long id = reserva.getId();
+        TransaccionUtil.despuesDelCommit(() -> {
+            indiceDisponibilidad.quitar(vehiculoId, CalendarioOcupacion.Origen.RESERVA, id);
+            cacheBusquedas.invalidarOcupacion();
+        });
+    }
+
+    public void registrarBloque(Disponibilidad bloque) {
+        CalendarioOcupacion.Tramo tramo = tramo(bloque);
+        Long vehiculoId = bloque.getVehiculo().getId();
+        TransaccionUtil.despuesDelCommit(() -> {
+            indiceDisponibilidad.poner(vehiculoId, tramo);
+            cacheBusquedas.invalidarOcupacion();
+        });
+    }
+
+    public void quitarBloque(Disponibilidad bloque) {
+        Long vehiculoId = bloque.getVehiculo().getId();
+        long id = bloque.getId();
+        TransaccionUtil.despuesDelCommit(() -> {
+            indiceDisponibilidad.quitar(vehiculoId, CalendarioOcupacion.Origen.BLOQUE, id);
+            cacheBusquedas.invalidarOcupacion();
+        });
+    }
+
+    public void reconstruirIndice() {
+        indiceDisponibilidad.vaciar();
+    }
+
+    private CalendarioOcupacion cargarCalendario(Long vehiculoId) {
+        if (vehiculoService.buscarPorId(vehiculoId) == null) {
+            throw new VehiculoNoEncontradoException();
+        }
+        List<CalendarioOcupacion.Tramo> tramos = new ArrayList<>();
+        LocalDate hoy = LocalDate.now();
+        for (Reserva reserva : reservaRepository.findProximas(vehiculoId, hoy)) {
+            tramos.add(tramo(reserva));
+        }
+        for (Disponibilidad bloque : disponibilidadRepository.findProximas(vehiculoId, hoy)) {
+            tramos.add(tramo(bloque));
+        }
+        return new CalendarioOcupacion(tramos);
+    }
+
+    private static EstadoDia estadoDe(CalendarioOcupacion.Tramo tramo) {
+        if ("RESERVA_CONFIRMADA".equals(tramo.motivo())) {
+            return EstadoDia.CONFIRMADO;
+        }
+        if ("RESERVA_PENDIENTE".equals(tramo.motivo())) {
+            return EstadoDia.PENDIENTE;
+        }
+        return EstadoDia.BLOQUEADO;
+    }
+
+    private static CalendarioOcupacion.Tramo tramo(Reserva reserva) {
+        String motivo = Boolean.TRUE.equals(reserva.getConfirmado()) ? "RESERVA_CONFIRMADA" : "RESERVA_PENDIENTE";
+        return new CalendarioOcupacion.Tramo(dia(reserva.getFechaInicio()), dia(reserva.getFechaFin()),
+                CalendarioOcupacion.Origen.RESERVA, reserva.getId(), motivo);
+    }
+
+    private static CalendarioOcupacion.Tramo tramo(Disponibilidad bloque) {
+        return new CalendarioOcupacion.Tramo(dia(bloque.getFechaInicio()), dia(bloque.getFechaFin()),
+                CalendarioOcupacion.Origen.BLOQUE, bloque.getId(), bloque.getMotivo());
+    }
+
+    private static long dia(LocalDate fecha) {
+        return fecha.toEpochDay();
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,143 @@
 package com.appCasa.app.servicio;
 
+import com.appCasa.app.modelo.CorreoPendiente;
+import com.appCasa.app.repositorio.CorreoPendienteRepository;
 import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envío de correos. {@link #enviarEmail} envía en el momento; el resto de la
+ * aplicación usa {@link #encolar}, que guarda el correo en la transacción de
+ * quien llama para que lo envíen después los hilos de {@link EnvioCorreos}.
+ * Un servidor SMTP lento o caído ya no retiene ninguna petición.
+ */
 @Service
 public class EmailService {
 
+    private static final int MAXIMO_INTENTOS = 8;
+    private static final long ESPERA_INICIAL_SEGUNDOS = 30;
+    private static final long ESPERA_MAXIMA_SEGUNDOS = 3600;
+
     @Autowired
     private JavaMailSender mailSender;
 
+    @Autowired
+    private CorreoPendienteRepository correoPendienteRepository;
+
+    @Value("${app.correo.habilitado:false}")
+    private boolean correoHabilitado;
+
+    private final AtomicLong enviados = new AtomicLong();
+    private final AtomicLong reintentos = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+
     public void enviarEmail(String destinatario, String asunto, String cuerpo) throws MessagingException {
+        mailSender.send(crearMensaje(destinatario, asunto, cuerpo));
+    }
+
+    public boolean estaHabilitado() {
+        return correoHabilitado;
+    }
+
+    /**
+     * Deja el correo en la cola y devuelve si lo ha hecho. No hace nada si el
+     * correo está deshabilitado o no hay destinatario.
+     */
+    @Transactional
+    public boolean encolar(String destinatario, String asunto, String cuerpo) {
+        if (!correoHabilitado || destinatario == null) {
+            return false;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        CorreoPendiente correo = new CorreoPendiente();
+        correo.setDestinatario(destinatario);
+        correo.setAsunto(asunto);
+        correo.setCuerpo(cuerpo);
+        correo.setCreado(ahora);
+        correo.setSiguienteIntento(ahora);
+        correoPendienteRepository.save(correo);
+        return true;
+    }
+
+    /**
+     * Envía por la conexión dada un lote de correos pendientes y devuelve
+     * cuántos ha procesado. Los fallos se reintentan con espera exponencial;
+     * tras {@value #MAXIMO_INTENTOS} intentos, o si la dirección no es
+     * válida, el correo se descarta con su último error. Si no se puede
+     * conectar con el servidor, el lote se corta ahí sin gastar intentos: los
+     * correos que faltan siguen pendientes tal cual.
+     */
+    @Transactional
+    public int enviarPendientes(int limite, ConexionSmtp conexion) {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<CorreoPendiente> pendientes = correoPendienteRepository.findPendientes(ahora, Limit.of(limite));
+        int procesados = 0;
+        for (CorreoPendiente correo : pendientes) {
+            try {
+                conexion.enviar(crearMensaje(correo.getDestinatario(), correo.getAsunto(), correo.getCuerpo()));
+                correo.setEnviado(LocalDateTime.now());
+                correo.setUltimoError(null);
+                enviados.incrementAndGet();
+            } catch (ConexionSmtp.SinConexionException e) {
+                break;
+            } catch (Exception e) {
+                correo.setIntentos(correo.getIntentos() + 1);
+                correo.setUltimoError(mensaje(e));
+                if (correo.getIntentos() >= MAXIMO_INTENTOS || esDefinitivo(e)) {
+                    correo.setDescartado(ahora);
+                    descartados.incrementAndGet();
+                } else {
+                    long espera = Math.min(ESPERA_MAXIMA_SEGUNDOS,
+                            ESPERA_INICIAL_SEGUNDOS << Math.min(correo.getIntentos() - 1, 20));
+                    correo.setSiguienteIntento(ahora.plusSeconds(espera));
+                    reintentos.incrementAndGet();
+                }
+            }
+            procesados++;
+        }
+        return procesados;
+    }
+
+    /** Vuelve a poner en cola los correos descartados y devuelve cuántos. */
+    @Transactional
+    public int reactivarDescartados() {
+        return correoPendienteRepository.reactivarDescartados(LocalDateTime.now());
+    }
+
+    @Transactional
+    public int borrarEnviados(LocalDateTime antesDe) {
+        return correoPendienteRepository.borrarEnviados(antesDe);
+    }
+
+    public Map<String, Object> estadisticas() {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime masAntiguo = correoPendienteRepository.findCreadoMasAntiguoPendiente();
+        return Map.of(
+                "pendientes", correoPendienteRepository.countByEnviadoIsNullAndDescartadoIsNull(),
+                "descartados", correoPendienteRepository.countByDescartadoIsNotNull(),
+                "enviadosUltimoMinuto", correoPendienteRepository.countByEnviadoAfter(ahora.minusMinutes(1)),
+                "retrasoMs", masAntiguo == null ? 0 : Duration.between(masAntiguo, ahora).toMillis(),
+                "enviadosDesdeArranque", enviados.get(),
+                "reintentosDesdeArranque", reintentos.get(),
+                "descartadosDesdeArranque", descartados.get());
+    }
+
+    private MimeMessage crearMensaje(String destinatario, String asunto, String cuerpo) throws MessagingException {
         MimeMessage mensaje = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(mensaje, true);
 
@@ -22,6 +146,21 @@ public class EmailService {
         helper.setText(cuerpo, true);
         helper.setFrom("no-reply@hbcavonni.com");
 
-        mailSender.send(mensaje);
+        return mensaje;
+    }
+
+    /** Errores que no se arreglan reintentando: la dirección está mal o el servidor la rechaza. */
+    private static boolean esDefinitivo(Exception e) {
+        if (e instanceof AddressException) {
+            return true;
+        }
+        return e instanceof SendFailedException fallo
+                && fallo.getInvalidAddresses() != null && fallo.getInvalidAddresses().length > 0
+                && (fallo.getValidUnsentAddresses() == null || fallo.getValidUnsentAddresses().length == 0);
+    }
+
+    private static String mensaje(Exception e) {
+        String mensaje = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return mensaje.length() > 1000 ? mensaje.substring(0, 1000) : mensaje;
     }
 }
@@ -0,0 +1,124 @@
+package com.appCasa.app.servicio;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hilos que vacían la cola de correos. Cada uno mantiene su propia conexión
+ * SMTP mientras haya trabajo y la cierra cuando la cola se queda vacía; la
+ * consulta de pendientes salta las filas bloqueadas, así que los hilos (y
+ * otras instancias) no se pisan. Mientras el servidor SMTP no responde, cada
+ * hilo espera cada vez más entre intentos de conexión.
+ */
+@Component
+public class EnvioCorreos {
+
+    private static final Logger log = LoggerFactory.getLogger(EnvioCorreos.class);
+
+    private static final int LOTE = 50;
+    private static final long ESPERA_MAXIMA_SIN_SERVIDOR_MS = 300_000;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private JavaMailSenderImpl mailSender;
+
+    @Value("${app.correo.habilitado:false}")
+    private boolean correoHabilitado;
+
+    @Value("${app.correo.hilos:2}")
+    private int hilos;
+
+    @Value("${app.correo.intervalo-ms:2000}")
+    private long intervaloMs;
+
+    @Value("${app.correo.retencion-dias:7}")
+    private int diasRetencion;
+
+    private final List<Thread> trabajadores = new ArrayList<>();
+    private final List<ConexionSmtp> conexiones = new ArrayList<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void arrancar() {
+        if (!correoHabilitado) {
+            return;
+        }
+        for (int i = 0; i < hilos; i++) {
+            ConexionSmtp conexion = new ConexionSmtp(mailSender);
+            String nombre = "envio-correos-" + (i + 1);
+            Thread trabajador = new Thread(() -> atender(conexion), nombre);
+            trabajador.setDaemon(true);
+            conexiones.add(conexion);
+            trabajadores.add(trabajador);
+            trabajador.start();
+        }
+    }
+
+    @PreDestroy
+    synchronized void parar() {
+        trabajadores.forEach(Thread::interrupt);
+    }
+
+    @Scheduled(cron = "${app.correo.limpieza-cron:0 45 3 * * *}")
+    public void limpiar() {
+        emailService.borrarEnviados(LocalDateTime.now().minusDays(diasRetencion));
+    }
+
+    public synchronized Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>(emailService.estadisticas());
+        estadisticas.put("hilos", trabajadores.size());
+        estadisticas.put("conexionesAbiertas", conexiones.stream().mapToLong(ConexionSmtp::getAperturas).sum());
+        return estadisticas;
+    }
+
+    private void atender(ConexionSmtp conexion) {
+        long esperaSinServidor = intervaloMs;
+        try (conexion) {
+            while (!Thread.currentThread().isInterrupted()) {
+                int procesados;
+                try {
+                    procesados = emailService.enviarPendientes(LOTE, conexion);
+                } catch (RuntimeException e) {
+                    log.warn("No se ha podido procesar la cola de correos.", e);
+                    procesados = 0;
+                }
+                long espera;
+                if (conexion.getFalloConexion() != null) {
+                    log.warn("El servidor SMTP no responde; se reintentará en {} ms.",
+                            esperaSinServidor, conexion.getFalloConexion());
+                    conexion.close();
+                    espera = esperaSinServidor;
+                    esperaSinServidor = Math.min(ESPERA_MAXIMA_SIN_SERVIDOR_MS, esperaSinServidor * 2);
+                } else if (procesados < LOTE) {
+                    // Cola vacía: no se retiene la conexión mientras se espera.
+                    conexion.close();
+                    espera = intervaloMs;
+                    esperaSinServidor = intervaloMs;
+                } else {
+                    esperaSinServidor = intervaloMs;
+                    continue;
+                }
+                try {
+                    Thread.sleep(espera);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
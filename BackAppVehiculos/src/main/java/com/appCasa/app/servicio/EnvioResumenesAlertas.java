@@ -0,0 +1,40 @@
+package com.appCasa.app.servicio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Envía cada minuto los resúmenes de alertas de los usuarios a los que ya les
+ * toca, en lotes de una transacción cada uno.
+ */
+@Component
+public class EnvioResumenesAlertas {
+
+    private static final Logger log = LoggerFactory.getLogger(EnvioResumenesAlertas.class);
+
+    private static final int LOTE = 100;
+
+    @Autowired
+    private ResumenesAlertasService resumenesAlertasService;
+
+    @Scheduled(fixedDelayString = "${app.alertas.resumen.intervalo-ms:60000}")
+    public void enviar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Long> usuarios = resumenesAlertasService.usuariosConResumenPendiente(ahora);
+        for (int i = 0; i < usuarios.size(); i += LOTE) {
+            try {
+                resumenesAlertasService.enviarResumenes(usuarios.subList(i, Math.min(i + LOTE, usuarios.size())), ahora);
+            } catch (RuntimeException e) {
+                // El lote queda pendiente y se reintenta en la siguiente pasada.
+                log.warn("No se han podido enviar los resúmenes de alertas de un lote de {} usuarios.",
+                        Math.min(LOTE, usuarios.size() - i), e);
+            }
+        }
+    }
+}
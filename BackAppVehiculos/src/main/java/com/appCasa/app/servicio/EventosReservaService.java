@@ -0,0 +1,186 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.modelo.EventoReserva;
+import com.appCasa.app.modelo.Reserva;
+import com.appCasa.app.modelo.TipoEventoReserva;
+import com.appCasa.app.modelo.TipoOperacion;
+import com.appCasa.app.modelo.Vehiculo;
+import com.appCasa.app.plantilla.Plantillas;
+import com.appCasa.app.repositorio.EventoReservaRepository;
+import com.appCasa.app.repositorio.VehiculoRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bandeja de salida de los cambios de reservas. {@link #registrar} se llama
+ * dentro de la transacción de la reserva; el despachador recoge después los
+ * eventos pendientes, encola los correos y avisa a las alertas. Un evento se marca
+ * como procesado solo cuando todo ha ido bien, así que puede repetirse tras
+ * un fallo, pero no perderse. Cada evento se despacha en su propia
+ * transacción, para que uno que falle en la base de datos no deshaga el
+ * resto del lote ni su propio registro de reintentos.
+ */
+@Service
+@Transactional
+public class EventosReservaService {
+
+    private static final int MAXIMO_INTENTOS = 10;
+    private static final long ESPERA_MAXIMA_SEGUNDOS = 3600;
+
+    @Autowired
+    private EventoReservaRepository eventoReservaRepository;
+    @Autowired
+    private VehiculoRepository vehiculoRepository;
+    @Autowired
+    private EmailService emailService;
+    @Autowired
+    private ColaAlertas colaAlertas;
+    @Autowired
+    private Plantillas plantillas;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public void registrar(TipoEventoReserva tipo, Reserva reserva) {
+        Vehiculo vehiculo = reserva.getVehiculo();
+        LocalDateTime ahora = LocalDateTime.now();
+        EventoReserva evento = new EventoReserva();
+        evento.setTipo(tipo);
+        evento.setReservaId(reserva.getId());
+        evento.setVehiculoId(vehiculo.getId());
+        evento.setTipoOperacion(vehiculo.getTipoOperacion());
+        evento.setVehiculo(vehiculo.getMarca() + " " + vehiculo.getModelo());
+        evento.setNombreUsuario(reserva.getUsuario().getNombre());
+        evento.setEmailUsuario(reserva.getUsuario().getEmail());
+        evento.setEmailPropietario(vehiculo.getUsuario() != null ? vehiculo.getUsuario().getEmail() : null);
+        evento.setFechaInicio(reserva.getFechaInicio());
+        evento.setFechaFin(reserva.getFechaFin());
+        evento.setTotal(reserva.getTotal());
+        evento.setCreado(ahora);
+        evento.setSiguienteIntento(ahora);
+        eventoReservaRepository.save(evento);
+    }
+
+    /**
+     * Procesa un lote de eventos pendientes y devuelve cuántos ha cogido. Cada
+     * evento se bloquea y se despacha en una transacción nueva; si falla, esa
+     * transacción se deshace entera y el fallo se anota en otra. Los que
+     * fallan se reintentan con espera exponencial; tras
+     * {@value #MAXIMO_INTENTOS} intentos se dejan marcados con el error.
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public int despacharPendientes(int limite) {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Long> pendientes = eventoReservaRepository.findIdsPendientes(ahora, Limit.of(limite));
+        TransactionTemplate porEvento = new TransactionTemplate(transactionManager);
+        porEvento.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (Long id : pendientes) {
+            try {
+                porEvento.executeWithoutResult(estado -> eventoReservaRepository.findPendienteParaDespachar(id, ahora)
+                        .ifPresent(evento -> {
+                            despachar(evento);
+                            evento.setProcesado(ahora);
+                            evento.setUltimoError(null);
+                        }));
+            } catch (RuntimeException e) {
+                porEvento.executeWithoutResult(estado -> eventoReservaRepository.findPendienteParaDespachar(id, ahora)
+                        .ifPresent(evento -> anotarFallo(evento, e, ahora)));
+            }
+        }
+        return pendientes.size();
+    }
+
+    public int borrarProcesados(LocalDateTime antesDe) {
+        return eventoReservaRepository.borrarProcesados(antesDe);
+    }
+
+    public Map<String, Object> estadisticas() {
+        return Map.of(
+                "pendientes", eventoReservaRepository.countByProcesadoIsNull(),
+                "fallidos", eventoReservaRepository.countByProcesadoIsNotNullAndUltimoErrorIsNotNull());
+    }
+
+    private void despachar(EventoReserva evento) {
+        enviarCorreos(evento);
+        if (liberaVehiculo(evento)) {
+            vehiculoRepository.findById(evento.getVehiculoId())
+                    .filter(v -> Boolean.TRUE.equals(v.getValidada()) && !Boolean.TRUE.equals(v.getReservado()))
+                    .ifPresent(v -> colaAlertas.encolar(v.getId()));
+        }
+    }
+
+    /** Una reserva de compra que no sigue adelante devuelve el vehículo al mercado. */
+    private static boolean liberaVehiculo(EventoReserva evento) {
+        return evento.getTipoOperacion() == TipoOperacion.VENTA
+                && (evento.getTipo() == TipoEventoReserva.RECHAZADA
+                || evento.getTipo() == TipoEventoReserva.CANCELADA
+                || evento.getTipo() == TipoEventoReserva.EXPIRADA);
+    }
+
+    private void enviarCorreos(EventoReserva evento) {
+        Map<String, Object> datos = new HashMap<>();
+        datos.put("vehiculo", evento.getVehiculo());
+        datos.put("usuario", evento.getNombreUsuario());
+        datos.put("venta", evento.getTipoOperacion() == TipoOperacion.VENTA);
+        datos.put("fechaInicio", evento.getFechaInicio());
+        datos.put("fechaFin", evento.getFechaFin());
+        datos.put("total", evento.getTotal());
+        switch (evento.getTipo()) {
+            case CREADA -> {
+                emailService.encolar(evento.getEmailUsuario(), "Reserva en espera de confirmación",
+                        plantillas.renderizar("reserva-creada-usuario", datos));
+                enviarAlPropietario(evento, "Nueva solicitud de reserva - " + evento.getVehiculo(),
+                        plantillas.renderizar("reserva-creada-propietario", datos));
+            }
+            case CONFIRMADA, RECHAZADA -> {
+                boolean confirmada = evento.getTipo() == TipoEventoReserva.CONFIRMADA;
+                datos.put("confirmada", confirmada);
+                emailService.encolar(evento.getEmailUsuario(), confirmada ? "Reserva confirmada" : "Reserva rechazada",
+                        plantillas.renderizar("reserva-decidida", datos));
+            }
+            case CANCELADA -> {
+                String cuerpo = plantillas.renderizar("reserva-cancelada", datos);
+                emailService.encolar(evento.getEmailUsuario(), "Reserva cancelada", cuerpo);
+                if (!evento.getEmailUsuario().equals(evento.getEmailPropietario())) {
+                    enviarAlPropietario(evento, "Reserva cancelada", cuerpo);
+                }
+            }
+            case EXPIRADA -> {
+                String cuerpo = plantillas.renderizar("reserva-expirada", datos);
+                emailService.encolar(evento.getEmailUsuario(), "Reserva expirada", cuerpo);
+                enviarAlPropietario(evento, "Reserva expirada", cuerpo);
+            }
+        }
+    }
+
+    private void enviarAlPropietario(EventoReserva evento, String asunto, String cuerpo) {
+        if (evento.getEmailPropietario() != null) {
+            emailService.encolar(evento.getEmailPropietario(), asunto, cuerpo);
+        }
+    }
+
+    private static void anotarFallo(EventoReserva evento, Exception e, LocalDateTime ahora) {
+        evento.setIntentos(evento.getIntentos() + 1);
+        evento.setUltimoError(mensaje(e));
+        if (evento.getIntentos() >= MAXIMO_INTENTOS) {
+            evento.setProcesado(ahora);
+        } else {
+            long espera = Math.min(ESPERA_MAXIMA_SEGUNDOS, 1L << Math.min(evento.getIntentos(), 20));
+            evento.setSiguienteIntento(ahora.plusSeconds(espera));
+        }
+    }
+
+    private static String mensaje(Exception e) {
+        String mensaje = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return mensaje.length() > 1000 ? mensaje.substring(0, 1000) : mensaje;
+    }
+}
@@ -1,21 +1,35 @@
 package com.appCasa.app.servicio;
 
+import com.appCasa.app.indice.ColaExpiraciones;
 import com.appCasa.app.modelo.*;
 import com.appCasa.app.repositorio.*;
-import jakarta.mail.MessagingException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class ReservaService {
 
+    private static final int MAXIMO_LOTE = 50;
+
     @Autowired
     private ReservaRepository reservaRepository;
     @Autowired
@@ -23,17 +37,47 @@ public class ReservaService {
     @Autowired
     private UsuarioRepository usuarioRepository;
     @Autowired
-    private EmailService emailService;
+    private EventosReservaService eventosReservaService;
+    @Autowired
+    private CacheBusquedas cacheBusquedas;
+    @Autowired
+    private DisponibilidadService disponibilidadService;
     @Autowired
-    private DisponibilidadRepository disponibilidadRepository;
+    private BloqueosVehiculo bloqueosVehiculo;
+    @Autowired
+    private ColaExpiraciones colaExpiraciones;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.reservas.pagina.por-defecto:50}")
+    private int tamañoPaginaPorDefecto;
+
+    @Value("${app.reservas.pagina.maximo:100}")
+    private int tamañoPaginaMaximo;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarExpiraciones() {
+        colaExpiraciones.vaciar();
+        for (ExpiracionReserva expiracion : reservaRepository.findExpiracionesPendientes()) {
+            colaExpiraciones.programar(expiracion.getReservaId(), expiracion.getFechaExpiracion());
+        }
+    }
 
     public Reserva crearReserva(Reserva reserva) {
+        bloqueosVehiculo.bloquearHastaFinDeTransaccion(reserva.getVehiculo().getId());
         Vehiculo vehiculo = vehiculoRepository.findById(reserva.getVehiculo().getId())
                 .orElseThrow(() -> new RuntimeException("Vehículo no encontrado"));
+        if (vehiculo.getTipoOperacion() == TipoOperacion.ALQUILER) {
+            // Solo el alquiler vuelve a leer con la fila bloqueada, para que la
+            // comprobación de solapes en la base de datos no compita con otra
+            // instancia. La venta se retiene con el UPDATE condicional.
+            vehiculo = vehiculoRepository.findByIdParaReservar(vehiculo.getId())
+                    .orElseThrow(() -> new RuntimeException("Vehículo no encontrado"));
+        }
         Usuario usuario = usuarioRepository.findById(reserva.getUsuario().getId())
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
-        reserva.setFechaReserva(LocalDate.now().toString());
+        reserva.setFechaReserva(LocalDate.now());
 
         switch (vehiculo.getTipoOperacion()) {
             case VENTA -> prepararReservaVenta(reserva, vehiculo);
@@ -43,35 +87,168 @@ public class ReservaService {
         reserva.setVehiculo(vehiculo);
         reserva.setUsuario(usuario);
         reservaRepository.save(reserva);
+        disponibilidadService.registrarReserva(reserva);
 
         if (reserva.getFechaInicio() != null && reserva.getFechaFin() != null) {
             guardarBloque(reserva, "RESERVA_PENDIENTE");
         }
 
-        enviarCorreos(reserva, vehiculo, usuario);
+        if (vehiculo.getTipoOperacion() == TipoOperacion.VENTA) {
+            retenerParaVenta(vehiculo);
+            Long reservaId = reserva.getId();
+            LocalDate expiracion = reserva.getFechaExpiracion();
+            TransaccionUtil.despuesDelCommit(() -> colaExpiraciones.programar(reservaId, expiracion));
+        }
+
+        eventosReservaService.registrar(TipoEventoReserva.CREADA, reserva);
 
         return reserva;
     }
 
+    /**
+     * Reserva varios vehículos de alquiler de una vez: o se crean todas las
+     * reservas o ninguna. Los vehículos se bloquean juntos, se valida todo el
+     * lote en una pasada y, si nada choca, se guardan las reservas y sus bloques
+     * en la misma transacción, fundiendo cada bloque con sus vecinos como en una
+     * reserva suelta.
+     */
+    public ResultadoLote crearReservasEnLote(List<Reserva> solicitudes, Long usuarioId) {
+        if (solicitudes == null || solicitudes.isEmpty()) {
+            throw new RuntimeException("El lote no contiene reservas.");
+        }
+        if (solicitudes.size() > MAXIMO_LOTE) {
+            throw new RuntimeException("Como máximo se pueden reservar " + MAXIMO_LOTE + " vehículos por lote.");
+        }
+        Usuario usuario = usuarioRepository.findById(usuarioId)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+
+        List<ConflictoLote> conflictos = new ArrayList<>();
+        TreeSet<Long> vehiculoIds = new TreeSet<>();
+        for (int i = 0; i < solicitudes.size(); i++) {
+            Reserva solicitud = solicitudes.get(i);
+            if (solicitud.getVehiculo() == null || solicitud.getVehiculo().getId() == null) {
+                conflictos.add(new ConflictoLote(i, null, "Falta el vehículo."));
+            } else {
+                vehiculoIds.add(solicitud.getVehiculo().getId());
+            }
+        }
+
+        bloqueosVehiculo.bloquearVariosHastaFinDeTransaccion(vehiculoIds);
+        Map<Long, Vehiculo> vehiculos = vehiculoRepository.findAllParaReservar(vehiculoIds).stream()
+                .collect(Collectors.toMap(Vehiculo::getId, Function.identity()));
+
+        LocalDate hoy = LocalDate.now();
+        Map<Long, List<Reserva>> delLote = new HashMap<>();
+        for (int i = 0; i < solicitudes.size(); i++) {
+            Reserva solicitud = solicitudes.get(i);
+            if (solicitud.getVehiculo() == null || solicitud.getVehiculo().getId() == null) {
+                continue;
+            }
+            Long vehiculoId = solicitud.getVehiculo().getId();
+            Vehiculo vehiculo = vehiculos.get(vehiculoId);
+            List<Reserva> mismasVehiculo = delLote.computeIfAbsent(vehiculoId, id -> new ArrayList<>());
+            String error = errorEnLote(solicitud, vehiculo, hoy, mismasVehiculo);
+            if (error != null) {
+                conflictos.add(new ConflictoLote(i, vehiculoId, error));
+                continue;
+            }
+            solicitud.setId(null);
+            solicitud.setVehiculo(vehiculo);
+            solicitud.setUsuario(usuario);
+            solicitud.setFechaReserva(hoy);
+            solicitud.setPrecioDia(vehiculo.getPrecioPorDia());
+            solicitud.setTotal(calcularTotalAlquiler(vehiculo, solicitud.getFechaInicio(), solicitud.getFechaFin()));
+            solicitud.setFechaExpiracion(null);
+            solicitud.setConfirmado(false);
+            mismasVehiculo.add(solicitud);
+        }
+
+        if (!conflictos.isEmpty()) {
+            return new ResultadoLote(List.of(), conflictos);
+        }
+        insertarEnLote(solicitudes);
+        return new ResultadoLote(solicitudes, List.of());
+    }
+
+    private String errorEnLote(Reserva solicitud, Vehiculo vehiculo, LocalDate hoy, List<Reserva> mismasVehiculo) {
+        if (vehiculo == null) {
+            return "El vehículo no existe.";
+        }
+        if (!Boolean.TRUE.equals(vehiculo.getValidada())) {
+            return "El vehículo aún no ha sido validado.";
+        }
+        if (vehiculo.getTipoOperacion() != TipoOperacion.ALQUILER) {
+            return "Solo se pueden reservar en lote vehículos de alquiler.";
+        }
+        try {
+            disponibilidadService.validarRango(solicitud.getFechaInicio(), solicitud.getFechaFin());
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+        if (solicitud.getFechaInicio().isBefore(hoy)) {
+            return "La fecha de inicio no puede ser anterior a hoy.";
+        }
+        if (!disponibilidadService.estaLibre(vehiculo, solicitud.getFechaInicio(), solicitud.getFechaFin())
+                || !disponibilidadService.estaLibreEnBaseDeDatos(vehiculo.getId(), solicitud.getFechaInicio(), solicitud.getFechaFin())) {
+            return "El vehículo no está disponible en estas fechas.";
+        }
+        for (Reserva otra : mismasVehiculo) {
+            if (solicitud.getFechaInicio().isBefore(otra.getFechaFin())
+                    && solicitud.getFechaFin().isAfter(otra.getFechaInicio())) {
+                return "Se solapa con otra reserva del mismo lote.";
+            }
+        }
+        return null;
+    }
+
+    private void insertarEnLote(List<Reserva> reservas) {
+        for (Reserva reserva : reservas) {
+            reservaRepository.save(reserva);
+            disponibilidadService.registrarReserva(reserva);
+            guardarBloque(reserva, "RESERVA_PENDIENTE");
+            eventosReservaService.registrar(TipoEventoReserva.CREADA, reserva);
+        }
+    }
+
     private void prepararReservaVenta(Reserva reserva, Vehiculo vehiculo) {
         if (vehiculo.getReservado()) {
-            throw new RuntimeException("Este vehículo ya está reservado para compra.");
+            throw new ConflictoReservaException("Este vehículo ya está reservado para compra.");
         }
         reserva.setPrecioDia(null);
         reserva.setTotal(vehiculo.getPrecioTotal());
-        reserva.setFechaExpiracion(LocalDate.now().plusMonths(1).toString());
-        vehiculo.setReservado(true);
-        vehiculo.setDisponible(false);
+        reserva.setFechaExpiracion(LocalDate.now().plusMonths(1));
         reserva.setConfirmado(false);
-        vehiculoRepository.save(vehiculo);
+    }
+
+    private void retenerParaVenta(Vehiculo vehiculo) {
+        if (vehiculoRepository.retenerParaVenta(vehiculo.getId()) == 0) {
+            throw new ConflictoReservaException("Este vehículo ya está reservado para compra.");
+        }
+        entityManager.refresh(vehiculo);
+        TransaccionUtil.despuesDelCommit(cacheBusquedas::invalidar);
+    }
+
+    private void liberarRetencionVenta(Vehiculo vehiculo) {
+        if (vehiculoRepository.liberarRetencionVenta(vehiculo.getId()) > 0) {
+            entityManager.refresh(vehiculo);
+            TransaccionUtil.despuesDelCommit(cacheBusquedas::invalidar);
+        }
     }
 
     private void prepararReservaAlquiler(Reserva reserva, Vehiculo vehiculo) {
         if (reserva.getFechaInicio() == null || reserva.getFechaFin() == null) {
             throw new RuntimeException("Fechas obligatorias para alquiler.");
         }
-        if (!isVehiculoDisponible(vehiculo, reserva.getFechaInicio(), reserva.getFechaFin())) {
-            throw new RuntimeException("El vehículo no está disponible en estas fechas.");
+        disponibilidadService.validarRango(reserva.getFechaInicio(), reserva.getFechaFin());
+        if (reserva.getFechaInicio().isBefore(LocalDate.now())) {
+            throw new RuntimeException("La fecha de inicio no puede ser anterior a hoy.");
+        }
+        // El calendario en memoria descarta rápido lo que ya se sabe ocupado; la
+        // consulta a la base de datos, con la fila del vehículo bloqueada, ve
+        // también lo que hayan reservado otras instancias.
+        if (!disponibilidadService.estaLibre(vehiculo, reserva.getFechaInicio(), reserva.getFechaFin())
+                || !disponibilidadService.estaLibreEnBaseDeDatos(vehiculo.getId(), reserva.getFechaInicio(), reserva.getFechaFin())) {
+            throw new ConflictoReservaException("El vehículo no está disponible en estas fechas.");
         }
         reserva.setPrecioDia(vehiculo.getPrecioPorDia());
         reserva.setTotal(calcularTotalAlquiler(vehiculo, reserva.getFechaInicio(), reserva.getFechaFin()));
@@ -79,34 +256,8 @@ public class ReservaService {
         reserva.setConfirmado(false);
     }
 
-    private boolean isVehiculoDisponible(Vehiculo vehiculo, String fechaInicio, String fechaFin) {
-
-        for (Reserva r : reservaRepository.findAll()) {
-            if (r.getVehiculo().getId().equals(vehiculo.getId())
-                    && rangoSolapado(fechaInicio, fechaFin, r.getFechaInicio(), r.getFechaFin())) {
-                return false;
-            }
-        }
-
-        for (Disponibilidad d : disponibilidadRepository.findByVehiculo(vehiculo)) {
-            if (rangoSolapado(fechaInicio, fechaFin, d.getFechaInicio(), d.getFechaFin())) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean rangoSolapado(String ini1, String fin1, String ini2, String fin2) {
-        return ini1.compareTo(fin2) < 0 && fin1.compareTo(ini2) > 0;
-    }
-
     private void guardarBloque(Reserva reserva, String motivo) {
-        Disponibilidad bloque = new Disponibilidad();
-        bloque.setVehiculo(reserva.getVehiculo());
-        bloque.setFechaInicio(reserva.getFechaInicio());
-        bloque.setFechaFin(reserva.getFechaFin());
-        bloque.setMotivo(motivo);
-        disponibilidadRepository.save(bloque);
+        disponibilidadService.bloquear(reserva.getVehiculo(), reserva.getFechaInicio(), reserva.getFechaFin(), motivo);
     }
 
     public Reserva actualizarReserva(Reserva reserva) {
@@ -118,28 +269,49 @@ public class ReservaService {
         reservaRepository.save(existente);
 
         if (!Objects.equals(confirmadoPrevio, reserva.getConfirmado())) {
+            disponibilidadService.registrarReserva(existente);
             actualizarBloqueDisponibilidad(existente);
         }
 
-        if (existente.getVehiculo().getTipoOperacion() == TipoOperacion.VENTA && !existente.getConfirmado()) {
-            Vehiculo v = existente.getVehiculo();
-            v.setReservado(false);
-            v.setDisponible(true);
-            vehiculoRepository.save(v);
+        if (existente.getVehiculo().getTipoOperacion() == TipoOperacion.VENTA) {
+            if (!existente.getConfirmado()) {
+                existente.setFechaExpiracion(null);
+                liberarRetencionVenta(existente.getVehiculo());
+            }
+            Long reservaId = existente.getId();
+            TransaccionUtil.despuesDelCommit(() -> colaExpiraciones.cancelar(reservaId));
         }
 
-        notificarDecisionReserva(existente);
+        if (!Objects.equals(confirmadoPrevio, existente.getConfirmado())) {
+            eventosReservaService.registrar(Boolean.TRUE.equals(existente.getConfirmado())
+                    ? TipoEventoReserva.CONFIRMADA : TipoEventoReserva.RECHAZADA, existente);
+        }
         return existente;
     }
 
+    /**
+     * Los bloques de reservas contiguas se funden en una fila, así que el de
+     * una reserva se mueve de motivo o se quita por rango, no por fila.
+     */
     private void actualizarBloqueDisponibilidad(Reserva reserva) {
-        disponibilidadRepository.findByVehiculo(reserva.getVehiculo()).stream()
-                .filter(d -> Objects.equals(d.getFechaInicio(), reserva.getFechaInicio())
-                        && Objects.equals(d.getFechaFin(), reserva.getFechaFin()))
-                .forEach(d -> {
-                    d.setMotivo(reserva.getConfirmado() ? "RESERVA_CONFIRMADA" : "RESERVA_PENDIENTE");
-                    disponibilidadRepository.save(d);
-                });
+        if (reserva.getFechaInicio() == null || reserva.getFechaFin() == null) {
+            return;
+        }
+        bloqueosVehiculo.bloquearHastaFinDeTransaccion(reserva.getVehiculo().getId());
+        boolean confirmada = Boolean.TRUE.equals(reserva.getConfirmado());
+        disponibilidadService.liberar(reserva.getVehiculo(), reserva.getFechaInicio(), reserva.getFechaFin(),
+                confirmada ? "RESERVA_PENDIENTE" : "RESERVA_CONFIRMADA");
+        guardarBloque(reserva, confirmada ? "RESERVA_CONFIRMADA" : "RESERVA_PENDIENTE");
+    }
+
+    private void quitarBloqueDisponibilidad(Reserva reserva) {
+        if (reserva.getFechaInicio() == null || reserva.getFechaFin() == null) {
+            return;
+        }
+        bloqueosVehiculo.bloquearHastaFinDeTransaccion(reserva.getVehiculo().getId());
+        for (String motivo : List.of("RESERVA_PENDIENTE", "RESERVA_CONFIRMADA")) {
+            disponibilidadService.liberar(reserva.getVehiculo(), reserva.getFechaInicio(), reserva.getFechaFin(), motivo);
+        }
     }
 
     public void cancelarReserva(Long id) {
@@ -147,25 +319,43 @@ public class ReservaService {
                 .orElseThrow(() -> new RuntimeException("Reserva no encontrada"));
 
         if (reserva.getVehiculo().getTipoOperacion() == TipoOperacion.VENTA) {
-            Vehiculo vehiculo = reserva.getVehiculo();
-            vehiculo.setReservado(false);
-            vehiculo.setDisponible(true);
-            vehiculoRepository.save(vehiculo);
+            liberarRetencionVenta(reserva.getVehiculo());
         }
 
-        disponibilidadRepository.findByVehiculo(reserva.getVehiculo()).stream()
-                .filter(d -> Objects.equals(d.getFechaInicio(), reserva.getFechaInicio())
-                        && Objects.equals(d.getFechaFin(), reserva.getFechaFin()))
-                .forEach(disponibilidadRepository::delete);
+        quitarBloqueDisponibilidad(reserva);
 
         reservaRepository.delete(reserva);
-        notificarCancelacionReserva(reserva);
+        disponibilidadService.quitarReserva(reserva);
+        TransaccionUtil.despuesDelCommit(() -> colaExpiraciones.cancelar(id));
+        eventosReservaService.registrar(TipoEventoReserva.CANCELADA, reserva);
     }
 
-    private double calcularTotalAlquiler(Vehiculo vehiculo, String fechaInicio, String fechaFin) {
-        LocalDate ini = LocalDate.parse(fechaInicio);
-        LocalDate fin = LocalDate.parse(fechaFin);
-        long dias = ChronoUnit.DAYS.between(ini, fin);
+    public int expirarReservas(List<Long> ids) {
+        LocalDate hoy = LocalDate.now();
+        List<Reserva> aplazadas = new ArrayList<>();
+        int expiradas = 0;
+        for (Reserva reserva : reservaRepository.findAllById(ids)) {
+            if (Boolean.TRUE.equals(reserva.getConfirmado()) || reserva.getFechaExpiracion() == null) {
+                continue;
+            }
+            if (!reserva.getFechaExpiracion().isBefore(hoy)) {
+                aplazadas.add(reserva);
+                continue;
+            }
+            liberarRetencionVenta(reserva.getVehiculo());
+            reservaRepository.delete(reserva);
+            eventosReservaService.registrar(TipoEventoReserva.EXPIRADA, reserva);
+            expiradas++;
+        }
+        TransaccionUtil.despuesDelCommit(() -> {
+            ids.forEach(colaExpiraciones::cancelar);
+            aplazadas.forEach(r -> colaExpiraciones.programar(r.getId(), r.getFechaExpiracion()));
+        });
+        return expiradas;
+    }
+
+    private double calcularTotalAlquiler(Vehiculo vehiculo, LocalDate fechaInicio, LocalDate fechaFin) {
+        long dias = ChronoUnit.DAYS.between(fechaInicio, fechaFin);
         return dias * vehiculo.getPrecioPorDia();
     }
 
@@ -173,75 +363,39 @@ public class ReservaService {
 
     public Reserva buscarReserva(Long id) { return reservaRepository.findById(id).orElse(null); }
 
-    public List<Reserva> obtenerReservasDeVehiculosDelDueño(Long usuarioId) {
-        List<Vehiculo> mios = vehiculoRepository.findAll().stream()
-                .filter(v -> v.getUsuario().getId().equals(usuarioId)).toList();
-        return reservaRepository.findAll().stream()
-                .filter(r -> mios.contains(r.getVehiculo())).toList();
+    /**
+     * Las reservas se devuelven de la más reciente a la más antigua. Como el id
+     * crece con la fecha de reserva, el cursor solo guarda el último id.
+     */
+    public PaginaReservas obtenerReservasDeVehiculosDelDueño(Long usuarioId, Boolean confirmado,
+                                                            String cursor, Integer tamaño) {
+        int limite = tamañoPagina(tamaño);
+        CursorPaginacion desde = CursorPaginacion.decodificar(cursor);
+        return paginar(reservaRepository.findDeVehiculosDelDueño(usuarioId, confirmado,
+                desde != null ? desde.getId() : null, Limit.of(limite + 1)), limite);
     }
 
-    public List<Reserva> obtenerReservasDeUsuario(Long usuarioId) {
-        return reservaRepository.findAll().stream()
-                .filter(r -> r.getUsuario().getId().equals(usuarioId)).toList();
+    public PaginaReservas obtenerReservasDeUsuario(Long usuarioId, Boolean confirmado,
+                                                   String cursor, Integer tamaño) {
+        int limite = tamañoPagina(tamaño);
+        CursorPaginacion desde = CursorPaginacion.decodificar(cursor);
+        return paginar(reservaRepository.findDeUsuario(usuarioId, confirmado,
+                desde != null ? desde.getId() : null, Limit.of(limite + 1)), limite);
     }
 
-    private void enviarCorreos(Reserva reserva, Vehiculo vehiculo, Usuario usuario) {
-        /*
-        try {
-            String asuntoUsuario = "Reserva en espera de confirmación";
-            String cuerpoUsuario = "<h2>Reserva enviada</h2>" +
-                    "<p>Vehículo: <b>" + vehiculo.getMarca() + " " + vehiculo.getModelo() + "</b></p>" +
-                    (vehiculo.getTipoOperacion() == TipoOperacion.VENTA
-                        ? "<p>Reserva para compra con señal del 5%.</p>"
-                        : "<p>Fechas reservadas: " + reserva.getFechaInicio() + " al " + reserva.getFechaFin() + "</p>" +
-                          "<p>Total: $" + reserva.getTotal() + "</p>") +
-                    "<p>El propietario revisará tu solicitud.</p>";
-            emailService.enviarEmail(usuario.getEmail(), asuntoUsuario, cuerpoUsuario);
-
-            String asuntoDueno = "Nueva solicitud de reserva - " + vehiculo.getMarca() + " " + vehiculo.getModelo();
-            String cuerpoDueno = "<h2>Nueva solicitud de reserva</h2>" +
-                    "<p>Usuario: <b>" + usuario.getNombre() + "</b></p>" +
-                    (vehiculo.getTipoOperacion() == TipoOperacion.VENTA
-                        ? "<p>Reserva para compra con señal del 5%.</p>"
-                        : "<p>Fechas solicitadas: " + reserva.getFechaInicio() + " al " + reserva.getFechaFin() + "</p>" +
-                          "<p>Total a cobrar: $" + reserva.getTotal() + "</p>") +
-                    "<p>Confirma o rechaza desde tu panel.</p>";
-            emailService.enviarEmail(vehiculo.getUsuario().getEmail(), asuntoDueno, cuerpoDueno);
-        } catch (MessagingException e) {
-            e.printStackTrace();
-        }
-        */
-    }
-
-    private void notificarDecisionReserva(Reserva reserva) {
-        /*
-        try {
-            String asunto = reserva.getConfirmado() ? "Reserva confirmada" : "Reserva rechazada";
-            String cuerpo = "<h2>" + asunto + "</h2>" +
-                    "<p>Vehículo: <b>" + reserva.getVehiculo().getMarca() + " " + reserva.getVehiculo().getModelo() + "</b></p>" +
-                    (reserva.getConfirmado() ? "<p>Tu reserva ha sido aprobada.</p>"
-                                             : "<p>Tu reserva fue rechazada.</p>");
-            emailService.enviarEmail(reserva.getUsuario().getEmail(), asunto, cuerpo);
-        } catch (MessagingException e) {
-            e.printStackTrace();
+    private int tamañoPagina(Integer tamaño) {
+        if (tamaño == null || tamaño <= 0) {
+            return tamañoPaginaPorDefecto;
         }
-        */
+        return Math.min(tamaño, tamañoPaginaMaximo);
     }
 
-    private void notificarCancelacionReserva(Reserva reserva) {
-        /*
-        try {
-            String asunto = "Reserva cancelada";
-            String cuerpo = "<h2>Reserva cancelada</h2>" +
-                    "<p>La reserva para el vehículo <b>" + reserva.getVehiculo().getMarca() + " " + reserva.getVehiculo().getModelo() + "</b> ha sido cancelada.</p>";
-            emailService.enviarEmail(reserva.getUsuario().getEmail(), asunto, cuerpo);
-
-            if (!reserva.getUsuario().getEmail().equals(reserva.getVehiculo().getUsuario().getEmail())) {
-                emailService.enviarEmail(reserva.getVehiculo().getUsuario().getEmail(), asunto, cuerpo);
-            }
-        } catch (MessagingException e) {
-            e.printStackTrace();
+    private PaginaReservas paginar(List<Reserva> reservas, int limite) {
+        if (reservas.size() <= limite) {
+            return new PaginaReservas(reservas, null);
         }
-        */
+        List<Reserva> pagina = new ArrayList<>(reservas.subList(0, limite));
+        Long ultimo = pagina.get(limite - 1).getId();
+        return new PaginaReservas(pagina, new CursorPaginacion(null, ultimo).codificar());
     }
 }
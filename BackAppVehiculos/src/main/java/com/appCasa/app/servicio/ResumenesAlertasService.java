@@ -0,0 +1,120 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.modelo.CoincidenciaAlerta;
+import com.appCasa.app.modelo.FrecuenciaAlertas;
+import com.appCasa.app.modelo.Usuario;
+import com.appCasa.app.modelo.Vehiculo;
+import com.appCasa.app.plantilla.Plantillas;
+import com.appCasa.app.repositorio.CoincidenciaAlertaRepository;
+import com.appCasa.app.repositorio.UsuarioRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resúmenes por correo de las alertas: en lugar de un correo por vehículo y
+ * alerta, cada usuario recibe uno con todo lo acumulado desde el anterior,
+ * como mucho una vez por ventana de su frecuencia. Las coincidencias
+ * pendientes están en la base de datos, así que un reinicio no pierde nada.
+ * Con el correo deshabilitado no se envía nada y las coincidencias siguen
+ * pendientes, para que entren en el primer resumen cuando se habilite.
+ */
+@Service
+@Transactional
+public class ResumenesAlertasService {
+
+    private static final int VEHICULOS_POR_RESUMEN = 20;
+
+    @Autowired
+    private CoincidenciaAlertaRepository coincidenciaAlertaRepository;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private EmailService emailService;
+    @Autowired
+    private Plantillas plantillas;
+
+    public List<Long> usuariosConResumenPendiente(LocalDateTime ahora) {
+        if (!emailService.estaHabilitado()) {
+            return List.of();
+        }
+        List<Long> usuarios = new ArrayList<>();
+        for (Usuario usuario : coincidenciaAlertaRepository.findUsuariosConPendientes()) {
+            if (usuario.getEmail() == null) {
+                continue;
+            }
+            FrecuenciaAlertas frecuencia = usuario.getFrecuenciaAlertas() != null
+                    ? usuario.getFrecuenciaAlertas() : FrecuenciaAlertas.INMEDIATA;
+            LocalDateTime ultimo = usuario.getUltimoResumenAlertas();
+            if (ultimo == null || !ultimo.plus(frecuencia.getVentana()).isAfter(ahora)) {
+                usuarios.add(usuario.getId());
+            }
+        }
+        return usuarios;
+    }
+
+    /**
+     * Encola el resumen de cada usuario y marca sus coincidencias como
+     * notificadas en la misma transacción: o se hacen las dos cosas o
+     * ninguna, y la cola de correos se encarga de los reintentos. Si el correo
+     * no llega a encolarse, las coincidencias se quedan sin marcar.
+     */
+    public int enviarResumenes(List<Long> usuarioIds, LocalDateTime ahora) {
+        int enviados = 0;
+        for (Usuario usuario : usuarioRepository.findAllById(usuarioIds)) {
+            List<Object[]> resumen = coincidenciaAlertaRepository.resumirPendientesDeUsuario(usuario.getId());
+            if (resumen.isEmpty() || resumen.get(0)[0] == null) {
+                continue;
+            }
+            Long ultimaId = ((Number) resumen.get(0)[0]).longValue();
+            int total = ((Number) resumen.get(0)[1]).intValue();
+            List<CoincidenciaAlerta> recientes = coincidenciaAlertaRepository.findPendientesDeUsuario(
+                    usuario.getId(), ultimaId, Limit.of(VEHICULOS_POR_RESUMEN * 3));
+            if (!encolar(usuario, recientes, total)) {
+                continue;
+            }
+            coincidenciaAlertaRepository.marcarNotificadas(usuario.getId(), ultimaId);
+            usuario.setUltimoResumenAlertas(ahora);
+            enviados++;
+        }
+        return enviados;
+    }
+
+    private boolean encolar(Usuario usuario, List<CoincidenciaAlerta> recientes, int total) {
+        Map<Long, Vehiculo> vehiculos = new LinkedHashMap<>();
+        for (CoincidenciaAlerta coincidencia : recientes) {
+            if (vehiculos.size() == VEHICULOS_POR_RESUMEN) {
+                break;
+            }
+            vehiculos.putIfAbsent(coincidencia.getVehiculo().getId(), coincidencia.getVehiculo());
+        }
+
+        List<Map<String, Object>> filas = new ArrayList<>(vehiculos.size());
+        for (Vehiculo vehiculo : vehiculos.values()) {
+            Map<String, Object> fila = new HashMap<>();
+            fila.put("marca", vehiculo.getMarca());
+            fila.put("modelo", vehiculo.getModelo());
+            fila.put("año", vehiculo.getAño());
+            fila.put("kilometraje", vehiculo.getKilometraje());
+            fila.put("precio", vehiculo.getPrecioTotal());
+            filas.add(fila);
+        }
+        Map<String, Object> datos = new HashMap<>();
+        datos.put("nombre", usuario.getNombre());
+        datos.put("vehiculos", filas);
+        datos.put("restantes", total - vehiculos.size());
+
+        String asunto = total == 1
+                ? "Un vehículo nuevo coincide con tus alertas"
+                : total + " vehículos nuevos coinciden con tus alertas";
+        return emailService.encolar(usuario.getEmail(), asunto, plantillas.renderizar("resumen-alertas", datos));
+    }
+}
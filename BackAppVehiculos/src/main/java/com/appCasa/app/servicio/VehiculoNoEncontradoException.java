@@ -0,0 +1,8 @@
+package com.appCasa.app.servicio;
+
+public class VehiculoNoEncontradoException extends RuntimeException {
+
+    public VehiculoNoEncontradoException() {
+        super("Vehículo no encontrado.");
+    }
+}
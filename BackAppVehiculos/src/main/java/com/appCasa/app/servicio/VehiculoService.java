@@ -1,17 +1,39 @@
 package com.appCasa.app.servicio;
 
+import com.appCasa.app.indice.AcumuladorFacetas;
+import com.appCasa.app.indice.IndiceDisponibilidad;
+import com.appCasa.app.indice.IndiceVehiculos;
 import com.appCasa.app.modelo.*;
 import com.appCasa.app.repositorio.*;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class VehiculoService {
 
+    private static final int LOTE_CARGA_INDICE = 1000;
+
     @Autowired
     private VehiculoRepository vehiculoRepository;
 
@@ -28,7 +50,49 @@ public class VehiculoService {
     private DisponibilidadRepository disponibilidadRepository;
 
     @Autowired
-    private AlertaService alertaService;
+    private ColaAlertas colaAlertas;
+
+    @Autowired
+    private CoincidenciasAlertaService coincidenciasAlertaService;
+
+    @Autowired
+    private IndiceVehiculos indiceVehiculos;
+
+    @Autowired
+    private CacheBusquedas cacheBusquedas;
+
+    @Autowired
+    private IndiceDisponibilidad indiceDisponibilidad;
+
+    @Value("${app.busqueda.indice-memoria.habilitado:true}")
+    private boolean indiceMemoriaHabilitado;
+
+    @Value("${app.busqueda.pagina.por-defecto:50}")
+    private int tamañoPaginaPorDefecto;
+
+    @Value("${app.busqueda.pagina.maximo:100}")
+    private int tamañoPaginaMaximo;
+
+    @Value("${app.busqueda.sugerencias.por-defecto:5}")
+    private int sugerenciasPorDefecto;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarIndiceBusqueda() {
+        if (!indiceMemoriaHabilitado) {
+            return;
+        }
+        indiceVehiculos.vaciar();
+        Long desde = 0L;
+        List<ResumenVehiculo> lote;
+        do {
+            lote = vehiculoRepository.findResumenesValidados(desde, Limit.of(LOTE_CARGA_INDICE));
+            lote.forEach(indiceVehiculos::indexar);
+            if (!lote.isEmpty()) {
+                desde = lote.get(lote.size() - 1).getId();
+            }
+        } while (lote.size() == LOTE_CARGA_INDICE);
+        indiceVehiculos.marcarListo();
+    }
 
     public List<Vehiculo> obtenerTodas() {
         return vehiculoRepository.findAll();
@@ -39,7 +103,8 @@ public class VehiculoService {
     }
 
     public Vehiculo guardarVehiculo(Vehiculo vehiculo) {
-        if (vehiculo.getId() == null) {
+        boolean existente = vehiculo.getId() != null;
+        if (!existente) {
             if (vehiculoRepository.existsByMatriculaAndTipoOperacion(
                     vehiculo.getMatricula(),
                     vehiculo.getTipoOperacion())) {
@@ -60,9 +125,14 @@ public class VehiculoService {
         }
 
         Vehiculo guardado = vehiculoRepository.save(vehiculo);
+        actualizarIndice(guardado);
+        TransaccionUtil.despuesDelCommit(cacheBusquedas::invalidar);
 
         if (Boolean.TRUE.equals(guardado.getValidada())) {
-            alertaService.comprobarAlertasYNotificar(guardado);
+            Long vehiculoId = guardado.getId();
+            TransaccionUtil.despuesDelCommit(() -> colaAlertas.encolar(vehiculoId));
+        } else if (existente) {
+            coincidenciasAlertaService.borrarDeVehiculo(guardado.getId());
         }
 
         return guardado;
@@ -75,6 +145,7 @@ public class VehiculoService {
 
         try {
             favoritoRepository.deleteByVehiculo(vehiculo);
+            coincidenciasAlertaService.borrarDeVehiculo(id);
             reseñaRepository.deleteByVehiculo(vehiculo);
 
             List<Reserva> reservas = reservaRepository.findByVehiculo(vehiculo);
@@ -84,11 +155,31 @@ public class VehiculoService {
             disponibilidadRepository.deleteAll(disponibilidades);
 
             vehiculoRepository.delete(vehiculo);
+            TransaccionUtil.despuesDelCommit(() -> {
+                indiceVehiculos.eliminar(id);
+                indiceDisponibilidad.invalidar(id);
+                cacheBusquedas.invalidar();
+            });
         } catch (Exception e) {
             throw new RuntimeException("No se pudo eliminar el vehículo", e);
         }
     }
 
+    private void actualizarIndice(Vehiculo vehiculo) {
+        if (!indiceMemoriaHabilitado) {
+            return;
+        }
+        ResumenVehiculo resumen = ResumenVehiculo.de(vehiculo);
+        boolean validado = Boolean.TRUE.equals(vehiculo.getValidada());
+        TransaccionUtil.despuesDelCommit(() -> {
+            if (validado) {
+                indiceVehiculos.indexar(resumen);
+            } else {
+                indiceVehiculos.eliminar(resumen.getId());
+            }
+        });
+    }
+
     public List<Vehiculo> listarVehiculos() {
         return vehiculoRepository.findAll();
     }
@@ -97,33 +188,213 @@ public class VehiculoService {
         return vehiculoRepository.findByUbicacion(ubicacion);
     }
 
-    public List<Vehiculo> buscarConFiltros(String ubicacion,
-                                       Double precioMin, Double precioMax,
-                                       Integer añoMin, Integer añoMax,
-                                       Integer kilometrajeMax, Integer capacidadMin,
-                                       String marca, String modelo,
-                                       TipoOperacion tipo) {
+    public PaginaVehiculos buscarConFiltros(FiltroVehiculos filtro, OrdenVehiculos orden,
+                                            String cursor, Integer tamaño) {
+        OrdenVehiculos criterio = orden != null ? orden : OrdenVehiculos.RECIENTES;
+        int limite = tamañoPagina(tamaño);
+        CursorPaginacion desde = CursorPaginacion.decodificar(cursor);
+
+        validarFechasBusqueda(filtro);
+        String clave = filtro.normalizado() + "|" + criterio + "|" + cursor + "|" + limite;
+        CacheBusquedas.Entrada enCache = cacheBusquedas.obtener(clave);
+        if (enCache != null) {
+            return new PaginaVehiculos(cargarEnOrden(enCache.ids()), enCache.siguienteCursor());
+        }
+
+        long version = cacheBusquedas.version();
+        long versionOcupacion = filtro.tieneFechas() ? cacheBusquedas.versionOcupacion() : -1;
+        PaginaVehiculos pagina;
+        if (indiceMemoriaHabilitado && indiceVehiculos.isListo()) {
+            List<Long> ids = indiceVehiculos.buscar(filtro, vehiculosOcupados(filtro), criterio, desde, limite + 1);
+            pagina = paginar(cargarEnOrden(ids), criterio, limite);
+        } else {
+            Specification<Vehiculo> spec = especificacionFiltros(filtro).and(ordenarDesde(criterio, desde));
+            List<Vehiculo> vehiculos = vehiculoRepository.findBy(spec, q -> q.limit(limite + 1).all());
+            pagina = paginar(vehiculos, criterio, limite);
+        }
 
-    Specification<Vehiculo> spec = (root, query, criteriaBuilder) -> {
-        Predicate predicate = criteriaBuilder.conjunction();
-        predicate = criteriaBuilder.and(predicate, criteriaBuilder.isTrue(root.get("validada")));
+        List<Long> ids = pagina.getVehiculos().stream().map(Vehiculo::getId).toList();
+        cacheBusquedas.guardar(clave, ids, pagina.getSiguienteCursor(), version, versionOcupacion);
+        return pagina;
+    }
 
-        if (ubicacion != null && !ubicacion.isBlank())
-            predicate = criteriaBuilder.and(predicate,
-               criteriaBuilder.like(criteriaBuilder.lower(root.get("ubicacion")), "%" + ubicacion.toLowerCase() + "%"));
-        if (precioMin != null) {
-            predicate = criteriaBuilder.and(predicate, criteriaBuilder.or(
-                criteriaBuilder.ge(root.get("precioTotal"),   precioMin),
-                criteriaBuilder.ge(root.get("precioPorDia"),  precioMin)
-            ));
+    public List<Sugerencia> sugerir(CampoSugerencia campo, String prefijo, Integer limite) {
+        int cuantas = Math.min(limite == null || limite <= 0 ? sugerenciasPorDefecto : limite,
+                IndiceVehiculos.MAXIMO_SUGERENCIAS);
+        if (indiceMemoriaHabilitado && indiceVehiculos.isListo()) {
+            return indiceVehiculos.sugerir(campo, prefijo, cuantas);
         }
-        if (precioMax != null) {
-            predicate = criteriaBuilder.and(predicate, criteriaBuilder.or(
-                criteriaBuilder.le(root.get("precioTotal"),   precioMax),
-                criteriaBuilder.le(root.get("precioPorDia"),  precioMax)
-            ));
+
+        String patron = (prefijo != null ? prefijo.toLowerCase(Locale.ROOT) : "")
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return switch (campo) {
+            case MARCA -> vehiculoRepository.sugerirMarcas(patron, Limit.of(cuantas));
+            case MODELO -> vehiculoRepository.sugerirModelos(patron, Limit.of(cuantas));
+            case UBICACION -> vehiculoRepository.sugerirUbicaciones(patron, Limit.of(cuantas));
+        };
+    }
+
+    @Transactional(readOnly = true)
+    public FacetasVehiculos calcularFacetas(FiltroVehiculos filtro) {
+        validarFechasBusqueda(filtro);
+        if (indiceMemoriaHabilitado && indiceVehiculos.isListo()) {
+            return indiceVehiculos.facetas(filtro, vehiculosOcupados(filtro));
         }
 
+        AcumuladorFacetas acumulador = new AcumuladorFacetas();
+        try (Stream<Vehiculo> vehiculos = vehiculoRepository.findBy(especificacionFiltros(filtro), q -> q.stream())) {
+            vehiculos.forEach(v -> acumulador.añadir(v.getMarca(), v.getTipoOperacion(), v.getAño(),
+                    v.getKilometraje(), v.getPrecioTotal(), v.getPrecioPorDia()));
+        }
+        return acumulador.resultado();
+    }
+
+    private void validarFechasBusqueda(FiltroVehiculos filtro) {
+        if ((filtro.getFechaInicio() == null) != (filtro.getFechaFin() == null)) {
+            throw new RuntimeException("Indica fecha de inicio y de fin para buscar por disponibilidad.");
+        }
+        if (filtro.tieneFechas() && !filtro.getFechaFin().isAfter(filtro.getFechaInicio())) {
+            throw new RuntimeException("La fecha de fin debe ser posterior a la de inicio.");
+        }
+    }
+
+    private Set<Long> vehiculosOcupados(FiltroVehiculos filtro) {
+        if (!filtro.tieneFechas()) {
+            return Set.of();
+        }
+        Set<Long> ocupados = new HashSet<>(
+                reservaRepository.findVehiculosOcupados(filtro.getFechaInicio(), filtro.getFechaFin()));
+        ocupados.addAll(disponibilidadRepository.findVehiculosOcupados(filtro.getFechaInicio(), filtro.getFechaFin()));
+        return ocupados;
+    }
+
+    private List<Vehiculo> cargarEnOrden(List<Long> ids) {
+        Map<Long, Vehiculo> porId = vehiculoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Vehiculo::getId, Function.identity()));
+        List<Vehiculo> vehiculos = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Vehiculo vehiculo = porId.get(id);
+            if (vehiculo != null) {
+                vehiculos.add(vehiculo);
+            }
+        }
+        return vehiculos;
+    }
+
+    private int tamañoPagina(Integer tamaño) {
+        if (tamaño == null || tamaño <= 0) {
+            return tamañoPaginaPorDefecto;
+        }
+        return Math.min(tamaño, tamañoPaginaMaximo);
+    }
+
+    private PaginaVehiculos paginar(List<Vehiculo> vehiculos, OrdenVehiculos orden, int limite) {
+        if (vehiculos.size() <= limite) {
+            return new PaginaVehiculos(vehiculos, null);
+        }
+        List<Vehiculo> pagina = new ArrayList<>(vehiculos.subList(0, limite));
+        Vehiculo ultimo = pagina.get(limite - 1);
+        CursorPaginacion siguiente = new CursorPaginacion(valorOrden(ultimo, orden), ultimo.getId());
+        return new PaginaVehiculos(pagina, siguiente.codificar());
+    }
+
+    private String valorOrden(Vehiculo vehiculo, OrdenVehiculos orden) {
+        if (orden.getCampo() == null) {
+            return null;
+        }
+        return switch (orden.getCampo()) {
+            case "precio" -> String.valueOf(precioOrden(vehiculo));
+            case "año" -> String.valueOf(vehiculo.getAño());
+            default -> String.valueOf(vehiculo.getKilometraje());
+        };
+    }
+
+    private double precioOrden(Vehiculo vehiculo) {
+        if (vehiculo.getPrecioTotal() != null) {
+            return vehiculo.getPrecioTotal();
+        }
+        return vehiculo.getPrecioPorDia() != null ? vehiculo.getPrecioPorDia() : 0.0;
+    }
+
+    private Specification<Vehiculo> ordenarDesde(OrdenVehiculos orden, CursorPaginacion desde) {
+        return (root, query, criteriaBuilder) -> {
+            Path<Long> id = root.get("id");
+            if (orden.getCampo() == null) {
+                query.orderBy(criteriaBuilder.desc(id));
+                return desde == null ? null : criteriaBuilder.lessThan(id, desde.getId());
+            }
+
+            Expression<? extends Number> clave;
+            Number valor = null;
+            if ("precio".equals(orden.getCampo())) {
+                clave = criteriaBuilder.coalesce(
+                        criteriaBuilder.coalesce(root.<Double>get("precioTotal"), root.<Double>get("precioPorDia")),
+                        0.0);
+                if (desde != null) {
+                    valor = Double.valueOf(desde.getValor());
+                }
+            } else {
+                clave = root.get(orden.getCampo());
+                if (desde != null) {
+                    valor = Integer.valueOf(desde.getValor());
+                }
+            }
+
+            if (orden.isAscendente()) {
+                query.orderBy(criteriaBuilder.asc(clave), criteriaBuilder.asc(id));
+            } else {
+                query.orderBy(criteriaBuilder.desc(clave), criteriaBuilder.desc(id));
+            }
+            if (desde == null) {
+                return null;
+            }
+
+            Predicate mismoValor = criteriaBuilder.and(
+                    criteriaBuilder.equal(clave, valor),
+                    orden.isAscendente()
+                            ? criteriaBuilder.greaterThan(id, desde.getId())
+                            : criteriaBuilder.lessThan(id, desde.getId()));
+            Predicate siguienteValor = orden.isAscendente()
+                    ? criteriaBuilder.gt(clave, valor)
+                    : criteriaBuilder.lt(clave, valor);
+            return criteriaBuilder.or(siguienteValor, mismoValor);
+        };
+    }
+
+    private Specification<Vehiculo> especificacionFiltros(FiltroVehiculos filtro) {
+        String ubicacion = filtro.getUbicacion();
+        Double precioMin = filtro.getPrecioMin();
+        Double precioMax = filtro.getPrecioMax();
+        Integer añoMin = filtro.getAñoMin();
+        Integer añoMax = filtro.getAñoMax();
+        Integer kilometrajeMax = filtro.getKilometrajeMax();
+        Integer capacidadMin = filtro.getCapacidadMin();
+        String marca = filtro.getMarca();
+        String modelo = filtro.getModelo();
+        TipoOperacion tipo = filtro.getTipo();
+        LocalDate fechaInicio = filtro.getFechaInicio();
+        LocalDate fechaFin = filtro.getFechaFin();
+
+        return (root, query, criteriaBuilder) -> {
+            Predicate predicate = criteriaBuilder.conjunction();
+            predicate = criteriaBuilder.and(predicate, criteriaBuilder.isTrue(root.get("validada")));
+
+            if (ubicacion != null && !ubicacion.isBlank())
+                predicate = criteriaBuilder.and(predicate,
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("ubicacion")), "%" + ubicacion.toLowerCase() + "%"));
+            if (precioMin != null) {
+                predicate = criteriaBuilder.and(predicate, criteriaBuilder.or(
+                        criteriaBuilder.ge(root.get("precioTotal"), precioMin),
+                        criteriaBuilder.ge(root.get("precioPorDia"), precioMin)
+                ));
+            }
+            if (precioMax != null) {
+                predicate = criteriaBuilder.and(predicate, criteriaBuilder.or(
+                        criteriaBuilder.le(root.get("precioTotal"), precioMax),
+                        criteriaBuilder.le(root.get("precioPorDia"), precioMax)
+                ));
+            }
+
             if (añoMin != null) {
                 predicate = criteriaBuilder.and(predicate,
                         criteriaBuilder.greaterThanOrEqualTo(root.get("año"), añoMin));
@@ -140,24 +411,45 @@ public class VehiculoService {
             }
 
             if (capacidadMin != null)
-            predicate = criteriaBuilder.and(predicate, criteriaBuilder.ge(root.get("capacidadPasajeros"), capacidadMin));
+                predicate = criteriaBuilder.and(predicate, criteriaBuilder.ge(root.get("capacidadPasajeros"), capacidadMin));
 
-        if (marca != null && !marca.isBlank())
-            predicate = criteriaBuilder.and(predicate,
-               criteriaBuilder.like(criteriaBuilder.lower(root.get("marca")), "%" + marca.toLowerCase() + "%"));
+            if (marca != null && !marca.isBlank())
+                predicate = criteriaBuilder.and(predicate,
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("marca")), "%" + marca.toLowerCase() + "%"));
 
-        if (modelo != null && !modelo.isBlank())
-            predicate = criteriaBuilder.and(predicate,
-               criteriaBuilder.like(criteriaBuilder.lower(root.get("modelo")), "%" + modelo.toLowerCase() + "%"));
+            if (modelo != null && !modelo.isBlank())
+                predicate = criteriaBuilder.and(predicate,
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("modelo")), "%" + modelo.toLowerCase() + "%"));
 
-        if (tipo != null)
-            predicate = criteriaBuilder.and(predicate, criteriaBuilder.equal(root.get("tipoOperacion"), tipo));
+            if (tipo != null)
+                predicate = criteriaBuilder.and(predicate, criteriaBuilder.equal(root.get("tipoOperacion"), tipo));
 
-        return predicate;
-    };
+            if (fechaInicio != null && fechaFin != null) {
+                predicate = criteriaBuilder.and(predicate,
+                        criteriaBuilder.equal(root.get("tipoOperacion"), TipoOperacion.ALQUILER));
+
+                Subquery<Long> reservas = query.subquery(Long.class);
+                Root<Reserva> reserva = reservas.from(Reserva.class);
+                reservas.select(reserva.get("id")).where(
+                        criteriaBuilder.equal(reserva.get("vehiculo"), root),
+                        criteriaBuilder.lessThan(reserva.get("fechaInicio"), fechaFin),
+                        criteriaBuilder.greaterThan(reserva.get("fechaFin"), fechaInicio));
+
+                Subquery<Long> bloques = query.subquery(Long.class);
+                Root<Disponibilidad> bloque = bloques.from(Disponibilidad.class);
+                bloques.select(bloque.get("id")).where(
+                        criteriaBuilder.equal(bloque.get("vehiculo"), root),
+                        criteriaBuilder.lessThan(bloque.get("fechaInicio"), fechaFin),
+                        criteriaBuilder.greaterThan(bloque.get("fechaFin"), fechaInicio));
 
-    return vehiculoRepository.findAll(spec);
-}
+                predicate = criteriaBuilder.and(predicate,
+                        criteriaBuilder.not(criteriaBuilder.exists(reservas)),
+                        criteriaBuilder.not(criteriaBuilder.exists(bloques)));
+            }
+
+            return predicate;
+        };
+    }
 
     public void validarDatosVehiculo(Vehiculo vehiculo) {
         if (vehiculo.getTipoOperacion() == null) {
@@ -0,0 +1,115 @@
+package com.appCasa.app.controlador;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ImagenControllerTest {
+
+    private static final String NOMBRE = "veh_7_0b6f1c1e-8f0e-4a8e-9a4c-3f1b2d5e6a70.jpg";
+
+    @TempDir
+    Path temporal;
+
+    private Path carpeta;
+    private MockMvc mvc;
+    private byte[] contenido;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        // La carpeta de subidas va dentro del directorio temporal, que hace de "fuera".
+        carpeta = Files.createDirectory(temporal.resolve("imagenes"));
+
+        // Un PNG subido con extensión .jpg: el tipo sale del contenido, no del nombre.
+        contenido = new byte[100_000];
+        for (int i = 0; i < contenido.length; i++) {
+            contenido[i] = (byte) (i * 31);
+        }
+        byte[] firmaPng = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+        System.arraycopy(firmaPng, 0, contenido, 0, firmaPng.length);
+        Files.write(carpeta.resolve(NOMBRE), contenido);
+        Files.writeString(carpeta.resolve("pagina.html"), "<script>alert(1)</script>");
+        Files.writeString(temporal.resolve("secreto.txt"), "no");
+
+        ImagenController controlador = new ImagenController();
+        ReflectionTestUtils.setField(controlador, "rutaImagenes", carpeta.toString());
+        mvc = MockMvcBuilders.standaloneSetup(controlador).build();
+    }
+
+    @Test
+    void sirveLaImagenConValidadoresYCacheInmutable() throws Exception {
+        MvcResult resultado = mvc.perform(get("/api/imagenes/" + NOMBRE))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/png"))
+                .andExpect(header().string("ETag", "\"" + NOMBRE + "\""))
+                .andExpect(header().string("Cache-Control", "public, max-age=31536000, immutable"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().longValue("Content-Length", contenido.length))
+                .andReturn();
+        assertArrayEquals(contenido, resultado.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    void respondeNoModificadoSiElClienteYaLaTiene() throws Exception {
+        MvcResult resultado = mvc.perform(get("/api/imagenes/" + NOMBRE)
+                        .header("If-None-Match", "\"otra\", \"" + NOMBRE + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"" + NOMBRE + "\""))
+                .andReturn();
+        assertEquals(0, resultado.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    void sirveRangos() throws Exception {
+        MvcResult resultado = mvc.perform(get("/api/imagenes/" + NOMBRE).header("Range", "bytes=1000-1999"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 1000-1999/" + contenido.length))
+                .andReturn();
+        assertArrayEquals(Arrays.copyOfRange(contenido, 1000, 2000), resultado.getResponse().getContentAsByteArray());
+
+        resultado = mvc.perform(get("/api/imagenes/" + NOMBRE).header("Range", "bytes=-10"))
+                .andExpect(status().isPartialContent())
+                .andReturn();
+        assertArrayEquals(Arrays.copyOfRange(contenido, contenido.length - 10, contenido.length),
+                resultado.getResponse().getContentAsByteArray());
+
+        mvc.perform(get("/api/imagenes/" + NOMBRE).header("Range", "bytes=200000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */" + contenido.length));
+
+        // Un rango con el último byte antes del primero no es válido y se ignora.
+        mvc.perform(get("/api/imagenes/" + NOMBRE).header("Range", "bytes=5-3"))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", contenido.length));
+
+        // Si la copia parcial del cliente es de otra versión, se manda entera.
+        mvc.perform(get("/api/imagenes/" + NOMBRE).header("Range", "bytes=0-9").header("If-Range", "\"otra\""))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", contenido.length));
+    }
+
+    @Test
+    void noSirveNadaFueraDeLaCarpetaNiComoHtml() throws Exception {
+        mvc.perform(get("/api/imagenes/..")).andExpect(status().isNotFound());
+        mvc.perform(get("/api/imagenes/..%2Fsecreto.txt")).andExpect(status().isNotFound());
+        mvc.perform(get("/api/imagenes/no-existe.jpg")).andExpect(status().isNotFound());
+        mvc.perform(get("/api/imagenes/pagina.html"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/octet-stream"))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"));
+    }
+}
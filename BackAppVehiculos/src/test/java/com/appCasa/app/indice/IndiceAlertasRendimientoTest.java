@@ -0,0 +1,59 @@
+package com.appCasa.app.indice;
+
+import com.appCasa.app.modelo.Alerta;
+import com.appCasa.app.modelo.Vehiculo;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Mide el índice con un millón de alertas. Fuera de la ejecución normal de
+ * pruebas: {@code mvn test -Dgroups=rendimiento -Dpruebas.excluidas=none}.
+ */
+@Tag("rendimiento")
+class IndiceAlertasRendimientoTest {
+
+    private static final int ALERTAS = 1_000_000;
+    private static final int VEHICULOS = 2_000;
+    private static final int COMPROBADOS = 20;
+
+    @Test
+    void coincidenciasConUnMillonDeAlertas() {
+        Random azar = new Random(3);
+        List<Alerta> alertas = new ArrayList<>(ALERTAS);
+        for (long id = 1; id <= ALERTAS; id++) {
+            alertas.add(IndiceAlertasTest.alertaAleatoria(id, azar));
+        }
+        IndiceAlertas indice = new IndiceAlertas();
+        indice.cargar(alertas);
+
+        List<Vehiculo> vehiculos = new ArrayList<>();
+        for (int i = 0; i < VEHICULOS; i++) {
+            vehiculos.add(IndiceAlertasTest.vehiculoAleatorio(azar));
+        }
+
+        long coincidencias = 0;
+        long comienzo = System.nanoTime();
+        for (Vehiculo v : vehiculos) {
+            coincidencias += indice.coincidencias(v).size();
+        }
+        double msPorVehiculo = (System.nanoTime() - comienzo) / 1e6 / VEHICULOS;
+
+        long comienzoLineal = System.nanoTime();
+        for (int i = 0; i < COMPROBADOS; i++) {
+            Vehiculo v = vehiculos.get(i);
+            assertEquals(IndiceAlertasTest.linealmente(alertas, Set.of(), v),
+                    indice.coincidencias(v).stream().sorted().toList());
+        }
+        double msLineal = (System.nanoTime() - comienzoLineal) / 1e6 / COMPROBADOS;
+
+        System.out.printf("%d alertas: %.3f ms por vehículo con el índice, %.1f ms recorriéndolas todas; %.1f coincidencias de media%n",
+                indice.tamaño(), msPorVehiculo, msLineal, (double) coincidencias / VEHICULOS);
+    }
+}
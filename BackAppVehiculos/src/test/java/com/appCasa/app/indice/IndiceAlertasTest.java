@@ -0,0 +1,115 @@
+package com.appCasa.app.indice;
+
+import com.appCasa.app.modelo.Alerta;
+import com.appCasa.app.modelo.TipoOperacion;
+import com.appCasa.app.modelo.Vehiculo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndiceAlertasTest {
+
+    private static final int ALERTAS = 5_000;
+    private static final int VEHICULOS = 500;
+    private static final String[] MARCAS = { "Seat", "Renault", "Peugeot", "Toyota", "Volkswagen", "Ford", "BMW",
+            "Audi", "Kia", "Hyundai", "Dacia", "Citroën", "Opel", "Fiat", "Mercedes", "Skoda", "Nissan", "Mazda" };
+    private static final String[] CIUDADES = { "Madrid", "Sevilla", "Valencia", "Bilbao", "Zaragoza", "Málaga" };
+
+    @Test
+    void coincideConLaComprobacionUnaAUna() {
+        Random azar = new Random(3);
+        List<Alerta> alertas = new ArrayList<>(ALERTAS);
+        for (long id = 1; id <= ALERTAS; id++) {
+            alertas.add(alertaAleatoria(id, azar));
+        }
+        IndiceAlertas indice = new IndiceAlertas();
+        indice.cargar(alertas);
+
+        // Altas y bajas incrementales encima de la carga inicial.
+        Set<Long> quitadas = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            Long quitada = alertas.get(azar.nextInt(ALERTAS)).getId();
+            indice.quitar(quitada);
+            quitadas.add(quitada);
+            Alerta nueva = alertaAleatoria(ALERTAS + 1L + i, azar);
+            indice.poner(nueva);
+            alertas.add(nueva);
+        }
+        assertEquals(alertas.size() - quitadas.size(), indice.tamaño());
+
+        for (int i = 0; i < VEHICULOS; i++) {
+            Vehiculo v = vehiculoAleatorio(azar);
+            assertEquals(linealmente(alertas, quitadas, v), indice.coincidencias(v).stream().sorted().toList());
+        }
+    }
+
+    static List<Long> linealmente(List<Alerta> alertas, Set<Long> quitadas, Vehiculo v) {
+        List<Long> esperadas = new ArrayList<>();
+        for (Alerta a : alertas) {
+            if (!quitadas.contains(a.getId()) && acepta(a, v)) {
+                esperadas.add(a.getId());
+            }
+        }
+        return esperadas;
+    }
+
+    /** La comprobación original de AlertaService, alerta por alerta. */
+    static boolean acepta(Alerta alerta, Vehiculo vehiculo) {
+        if (alerta.getUbicacion() != null &&
+                !vehiculo.getUbicacion().toLowerCase(Locale.ROOT).contains(alerta.getUbicacion().toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        if (alerta.getMarca() != null && !vehiculo.getMarca().equalsIgnoreCase(alerta.getMarca())) {
+            return false;
+        }
+        if (alerta.getPrecioMax() != null && vehiculo.getPrecioTotal() > alerta.getPrecioMax()) {
+            return false;
+        }
+        if (alerta.getAñoMin() != null && vehiculo.getAño() < alerta.getAñoMin()) {
+            return false;
+        }
+        if (alerta.getAñoMax() != null && vehiculo.getAño() > alerta.getAñoMax()) {
+            return false;
+        }
+        if (alerta.getKilometrajeMax() != null && vehiculo.getKilometraje() > alerta.getKilometrajeMax()) {
+            return false;
+        }
+        return alerta.getTipoOperacion() == null || alerta.getTipoOperacion().equals(vehiculo.getTipoOperacion());
+    }
+
+    static Alerta alertaAleatoria(long id, Random azar) {
+        Alerta a = new Alerta();
+        a.setId(id);
+        a.setActiva(true);
+        a.setMarca(azar.nextInt(10) < 8 ? MARCAS[azar.nextInt(MARCAS.length)] : null);
+        a.setUbicacion(azar.nextInt(10) < 3 ? CIUDADES[azar.nextInt(CIUDADES.length)] : null);
+        a.setTipoOperacion(azar.nextInt(10) < 9 ? TipoOperacion.values()[azar.nextInt(2)] : null);
+        a.setPrecioMax(azar.nextInt(10) < 7 ? 3_000.0 + 1_000 * azar.nextInt(40) : null);
+        a.setKilometrajeMax(azar.nextInt(10) < 4 ? 20_000 * (1 + azar.nextInt(10)) : null);
+        if (azar.nextInt(10) < 4) {
+            a.setAñoMin(2005 + azar.nextInt(18));
+        }
+        if (azar.nextInt(10) < 2) {
+            a.setAñoMax(2010 + azar.nextInt(15));
+        }
+        return a;
+    }
+
+    static Vehiculo vehiculoAleatorio(Random azar) {
+        Vehiculo v = new Vehiculo();
+        v.setMarca(MARCAS[azar.nextInt(MARCAS.length)]);
+        v.setUbicacion(CIUDADES[azar.nextInt(CIUDADES.length)] + " centro");
+        v.setTipoOperacion(TipoOperacion.values()[azar.nextInt(2)]);
+        v.setPrecioTotal(2_000.0 + azar.nextInt(50_000));
+        v.setKilometraje(azar.nextInt(250_000));
+        v.setAño(2000 + azar.nextInt(26));
+        return v;
+    }
+}
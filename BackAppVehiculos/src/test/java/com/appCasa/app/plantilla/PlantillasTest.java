@@ -0,0 +1,124 @@
+package com.appCasa.app.plantilla;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.util.HtmlUtils;
+
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlantillasTest {
+
+    private Plantillas plantillas;
+
+    @BeforeEach
+    void cargar() throws Exception {
+        plantillas = new Plantillas();
+        ReflectionTestUtils.setField(plantillas, "idioma", "es-ES");
+        plantillas.cargar();
+    }
+
+    @Test
+    void escapaYFormateaSegunElIdioma() {
+        Map<String, Object> datos = new HashMap<>();
+        datos.put("vehiculo", "Citroën <C3> & \"Aircross\"");
+        datos.put("venta", false);
+        datos.put("fechaInicio", LocalDate.of(2025, 3, 5));
+        datos.put("fechaFin", LocalDate.of(2025, 3, 9));
+        datos.put("total", 1234.5);
+
+        String html = plantillas.renderizar("reserva-creada-usuario", datos);
+
+        assertTrue(html.contains("<b>Citroën &lt;C3&gt; &amp; &quot;Aircross&quot;</b>"), html);
+        assertTrue(html.contains("5 de marzo de 2025 al 9 de marzo de 2025"), html);
+        assertTrue(html.contains("Total: 1.234,50 €"), html);
+        assertTrue(!html.contains("señal"), html);
+
+        datos.put("venta", true);
+        html = plantillas.renderizar("reserva-creada-usuario", datos);
+        assertTrue(html.contains("señal del 5%") && !html.contains("Total"), html);
+    }
+
+    @Test
+    void repiteSeccionesYBuscaNombresHaciaFuera() {
+        Plantilla plantilla = Plantilla.compilar("prueba",
+                "{{! lista}}<ul>{{#vehiculos}}<li>{{marca}} {{año}} {{kilometraje|numero}} {{precio|moneda}} {{nombre}}</li>{{/vehiculos}}</ul>"
+                        + "{{^vehiculos}}nada{{/vehiculos}}{{#restantes}}+{{restantes}}{{/restantes}}");
+        Map<String, Object> seat = new HashMap<>();
+        seat.put("marca", "Seat");
+        seat.put("año", 2019);
+        seat.put("kilometraje", 125_000);
+        seat.put("precio", 15_999.0);
+        Map<String, Object> datos = new HashMap<>();
+        datos.put("nombre", "Ana");
+        datos.put("vehiculos", List.of(seat));
+        datos.put("restantes", 0);
+
+        StringBuilder html = new StringBuilder();
+        plantilla.renderizar(datos, html, new FormatoRegional(Locale.forLanguageTag("es-ES")));
+        assertEquals("<ul><li>Seat 2019 125.000 15.999,00 € Ana</li></ul>", html.toString());
+
+        html.setLength(0);
+        datos.put("vehiculos", List.of());
+        datos.put("restantes", 3);
+        plantilla.renderizar(datos, html, new FormatoRegional(Locale.forLanguageTag("es-ES")));
+        assertEquals("<ul></ul>nada+3", html.toString());
+    }
+
+    @Test
+    void rechazaPlantillasMalFormadas() {
+        assertThrows(IllegalStateException.class, () -> Plantilla.compilar("a", "{{#lista}}sin cerrar"));
+        assertThrows(IllegalStateException.class, () -> Plantilla.compilar("b", "{{#a}}{{/b}}"));
+        assertThrows(IllegalStateException.class, () -> Plantilla.compilar("c", "{{precio|dolares}}"));
+        assertThrows(IllegalStateException.class, () -> Plantilla.compilar("d", "{{precio"));
+    }
+
+    @Test
+    void resumenIgualQueEscritoAMano() {
+        List<Map<String, Object>> filas = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Map<String, Object> fila = new HashMap<>();
+            fila.put("marca", "Peugeot");
+            fila.put("modelo", "308 SW");
+            fila.put("año", 2010 + i % 14);
+            fila.put("kilometraje", 40_000 + 7_919 * i);
+            fila.put("precio", 9_990.0 + 455.5 * i);
+            filas.add(fila);
+        }
+        Map<String, Object> datos = new HashMap<>();
+        datos.put("nombre", "Ana");
+        datos.put("vehiculos", filas);
+        datos.put("restantes", 12);
+
+        assertEquals(concatenar(datos), plantillas.renderizar("resumen-alertas", datos));
+    }
+
+    /** Lo mismo escrito a mano, con un formateador y el escapado de Spring en cada envío. */
+    @SuppressWarnings("unchecked")
+    private static String concatenar(Map<String, Object> datos) {
+        Locale es = Locale.forLanguageTag("es-ES");
+        NumberFormat numero = NumberFormat.getNumberInstance(es);
+        NumberFormat moneda = NumberFormat.getNumberInstance(es);
+        moneda.setMinimumFractionDigits(2);
+        moneda.setMaximumFractionDigits(2);
+        String html = "<h3>¡Buenas noticias, " + HtmlUtils.htmlEscape((String) datos.get("nombre")) + "!</h3>\n"
+                + "<p>Se han publicado vehículos que coinciden con tus alertas:</p>\n<ul>\n";
+        for (Map<String, Object> fila : (List<Map<String, Object>>) datos.get("vehiculos")) {
+            html += "<li><b>" + HtmlUtils.htmlEscape((String) fila.get("marca")) + " "
+                    + HtmlUtils.htmlEscape((String) fila.get("modelo")) + "</b> · " + fila.get("año")
+                    + " · " + numero.format(fila.get("kilometraje")) + " km · "
+                    + moneda.format(fila.get("precio")) + " €</li>\n";
+        }
+        return html + "</ul>\n<p>Y " + datos.get("restantes") + " más.</p>\n<p>Accede a la plataforma para verlos.</p>\n";
+    }
+}
@@ -0,0 +1,114 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.indice.CalendarioOcupacion;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara los cerrojos por vehículo con un único cerrojo global para todas
+ * las reservas, con muchos hilos sobre muchos vehículos. Dentro del cerrojo
+ * se espera un poco para simular el insert en la base de datos. Fuera de la
+ * ejecución normal de pruebas:
+ * {@code mvn test -Dgroups=rendimiento -Dpruebas.excluidas=none}.
+ */
+@Tag("rendimiento")
+class BloqueosVehiculoRendimientoTest {
+
+    private static final int HILOS = 64;
+    private static final int VEHICULOS = 500;
+    private static final int INTENTOS_POR_HILO = 500;
+    private static final long ESCRITURA_NS = 50_000;
+
+    @Test
+    void porVehiculoFrenteACerrojoGlobal() throws Exception {
+        ReentrantLock global = new ReentrantLock();
+        BloqueosVehiculo bloqueos = new BloqueosVehiculo();
+
+        // La primera vuelta de cada uno solo calienta el JIT.
+        reservar(vehiculo -> global);
+        double globalPorSegundo = reservar(vehiculo -> global);
+        reservar(bloqueos::cerrojo);
+        double porVehiculoPorSegundo = reservar(bloqueos::cerrojo);
+
+        System.out.printf("%d hilos y %d vehículos: cerrojo global %.0f reservas/s, por vehículo %.0f reservas/s (x%.1f)%n",
+                HILOS, VEHICULOS, globalPorSegundo, porVehiculoPorSegundo, porVehiculoPorSegundo / globalPorSegundo);
+    }
+
+    /** Lanza los intentos con el cerrojo que se le indique y devuelve intentos por segundo. */
+    private double reservar(LongFunction<ReentrantLock> cerrojoDe) throws Exception {
+        CalendarioOcupacion[] calendarios = new CalendarioOcupacion[VEHICULOS];
+        for (int i = 0; i < VEHICULOS; i++) {
+            calendarios[i] = new CalendarioOcupacion(List.of());
+        }
+        ConcurrentLinkedQueue<CalendarioOcupacion.Tramo> aceptados = new ConcurrentLinkedQueue<>();
+        AtomicLong referencias = new AtomicLong();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+
+        for (int h = 0; h < HILOS; h++) {
+            hilos.submit(() -> {
+                salida.await();
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                for (int i = 0; i < INTENTOS_POR_HILO; i++) {
+                    // La mitad de los intentos se concentra en diez vehículos muy demandados.
+                    int vehiculo = azar.nextBoolean() ? azar.nextInt(10) : azar.nextInt(VEHICULOS);
+                    long inicio = azar.nextInt(365);
+                    long fin = inicio + 1 + azar.nextInt(7);
+                    ReentrantLock cerrojo = cerrojoDe.apply(vehiculo);
+                    cerrojo.lock();
+                    try {
+                        if (!calendarios[vehiculo].haySolape(inicio, fin)) {
+                            LockSupport.parkNanos(ESCRITURA_NS);
+                            CalendarioOcupacion.Tramo tramo = new CalendarioOcupacion.Tramo(inicio, fin,
+                                    CalendarioOcupacion.Origen.RESERVA, referencias.incrementAndGet(), String.valueOf(vehiculo));
+                            calendarios[vehiculo].poner(tramo);
+                            aceptados.add(tramo);
+                        }
+                    } finally {
+                        cerrojo.unlock();
+                    }
+                }
+                return null;
+            });
+        }
+
+        long comienzo = System.nanoTime();
+        salida.countDown();
+        hilos.shutdown();
+        assertTrue(hilos.awaitTermination(5, TimeUnit.MINUTES));
+        double segundos = (System.nanoTime() - comienzo) / 1e9;
+
+        List<List<CalendarioOcupacion.Tramo>> porVehiculo = new ArrayList<>();
+        for (int i = 0; i < VEHICULOS; i++) {
+            porVehiculo.add(new ArrayList<>());
+        }
+        for (CalendarioOcupacion.Tramo tramo : aceptados) {
+            porVehiculo.get(Integer.parseInt(tramo.motivo())).add(tramo);
+        }
+        for (List<CalendarioOcupacion.Tramo> tramos : porVehiculo) {
+            tramos.sort(Comparator.comparingLong(CalendarioOcupacion.Tramo::inicio));
+            for (int j = 1; j < tramos.size(); j++) {
+                assertTrue(tramos.get(j).inicio() >= tramos.get(j - 1).fin(), "reservas solapadas");
+            }
+        }
+        assertEquals(aceptados.size(), referencias.get());
+        return HILOS * INTENTOS_POR_HILO / segundos;
+    }
+}
@@ -0,0 +1,242 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.indice.CalendarioOcupacion;
+import com.appCasa.app.indice.ColaExpiraciones;
+import com.appCasa.app.indice.IndiceDisponibilidad;
+import com.appCasa.app.modelo.Disponibilidad;
+import com.appCasa.app.modelo.Reserva;
+import com.appCasa.app.modelo.TipoOperacion;
+import com.appCasa.app.modelo.Usuario;
+import com.appCasa.app.modelo.Vehiculo;
+import com.appCasa.app.repositorio.DisponibilidadRepository;
+import com.appCasa.app.repositorio.ReservaRepository;
+import com.appCasa.app.repositorio.UsuarioRepository;
+import com.appCasa.app.repositorio.VehiculoRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Varias instancias de {@link ReservaService} compiten por los mismos huecos.
+ * Cada una tiene sus propios cerrojos y un calendario en memoria que no se
+ * entera de lo que reservan las demás, así que solo la comprobación contra la
+ * base de datos, con la fila del vehículo bloqueada, puede evitar el solape.
+ */
+class BloqueosVehiculoTest {
+
+    private static final int INSTANCIAS = 2;
+    private static final int HILOS = 16;
+    private static final int VEHICULOS = 4;
+
+    private final List<Reserva> tablaReservas = new ArrayList<>();
+    private final Map<Long, ReentrantLock> filasVehiculo = new ConcurrentHashMap<>();
+    private final Map<Long, Vehiculo> vehiculos = new HashMap<>();
+    private final AtomicLong secuencia = new AtomicLong();
+
+    private ReservaRepository reservaRepository;
+    private VehiculoRepository vehiculoRepository;
+    private UsuarioRepository usuarioRepository;
+    private DisponibilidadRepository disponibilidadRepository;
+
+    @BeforeEach
+    void preparar() {
+        for (long id = 1; id <= VEHICULOS; id++) {
+            Vehiculo vehiculo = new Vehiculo();
+            vehiculo.setId(id);
+            vehiculo.setTipoOperacion(TipoOperacion.ALQUILER);
+            vehiculo.setPrecioPorDia(40.0);
+            vehiculo.setValidada(true);
+            vehiculos.put(id, vehiculo);
+            filasVehiculo.put(id, new ReentrantLock());
+        }
+        Usuario usuario = new Usuario();
+        usuario.setId(1L);
+
+        reservaRepository = mock(ReservaRepository.class);
+        when(reservaRepository.save(any(Reserva.class))).thenAnswer(invocacion -> {
+            Reserva reserva = invocacion.getArgument(0);
+            reserva.setId(secuencia.incrementAndGet());
+            synchronized (tablaReservas) {
+                tablaReservas.add(reserva);
+            }
+            return reserva;
+        });
+        when(reservaRepository.existeSolape(anyLong(), any(), any())).thenAnswer(invocacion -> {
+            Long vehiculoId = invocacion.getArgument(0);
+            LocalDate inicio = invocacion.getArgument(1);
+            LocalDate fin = invocacion.getArgument(2);
+            synchronized (tablaReservas) {
+                return tablaReservas.stream().anyMatch(r -> r.getVehiculo().getId().equals(vehiculoId)
+                        && r.getFechaInicio().isBefore(fin) && r.getFechaFin().isAfter(inicio));
+            }
+        });
+
+        vehiculoRepository = mock(VehiculoRepository.class);
+        when(vehiculoRepository.findById(anyLong())).thenAnswer(invocacion -> Optional.of(vehiculos.get(invocacion.<Long>getArgument(0))));
+        when(vehiculoRepository.findByIdParaReservar(anyLong())).thenAnswer(invocacion -> {
+            Long id = invocacion.getArgument(0);
+            filasVehiculo.get(id).lock();
+            return Optional.of(vehiculos.get(id));
+        });
+
+        usuarioRepository = mock(UsuarioRepository.class);
+        when(usuarioRepository.findById(1L)).thenReturn(Optional.of(usuario));
+
+        disponibilidadRepository = mock(DisponibilidadRepository.class);
+        when(disponibilidadRepository.save(any(Disponibilidad.class))).thenAnswer(invocacion -> {
+            Disponibilidad bloque = invocacion.getArgument(0);
+            bloque.setId(secuencia.incrementAndGet());
+            return bloque;
+        });
+    }
+
+    @Test
+    void reservasConcurrentesNoSeSolapan() throws Exception {
+        ReservaService[] instancias = new ReservaService[INSTANCIAS];
+        for (int i = 0; i < INSTANCIAS; i++) {
+            instancias[i] = instancia();
+        }
+        LocalDate hoy = LocalDate.now();
+        AtomicInteger rechazadas = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+
+        for (int h = 0; h < HILOS; h++) {
+            ReservaService servicio = instancias[h % INSTANCIAS];
+            hilos.submit(() -> {
+                salida.await();
+                ThreadLocalRandom azar = ThreadLocalRandom.current();
+                for (long vehiculoId = 1; vehiculoId <= VEHICULOS; vehiculoId++) {
+                    // Todos los intentos caen dentro de [hoy+10, hoy+15) y duran
+                    // tres días, así que cualquier par se solapa.
+                    LocalDate inicio = hoy.plusDays(10 + azar.nextInt(3));
+                    if (!reservarEnTransaccion(servicio, vehiculoId, inicio, inicio.plusDays(3))) {
+                        rechazadas.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+
+        salida.countDown();
+        hilos.shutdown();
+        assertTrue(hilos.awaitTermination(1, TimeUnit.MINUTES));
+
+        for (long vehiculoId = 1; vehiculoId <= VEHICULOS; vehiculoId++) {
+            long id = vehiculoId;
+            assertEquals(1, tablaReservas.stream().filter(r -> r.getVehiculo().getId() == id).count(),
+                    "reservas aceptadas del vehículo " + id);
+        }
+        assertEquals(HILOS * VEHICULOS - VEHICULOS, rechazadas.get());
+    }
+
+    @Test
+    void laVentaNoBloqueaLaFilaDelVehiculo() {
+        Vehiculo vehiculo = new Vehiculo();
+        vehiculo.setId(100L);
+        vehiculo.setTipoOperacion(TipoOperacion.VENTA);
+        vehiculo.setPrecioTotal(12_000.0);
+        vehiculo.setReservado(false);
+        vehiculo.setValidada(true);
+        vehiculos.put(100L, vehiculo);
+        when(vehiculoRepository.retenerParaVenta(100L)).thenReturn(1);
+
+        assertTrue(reservarEnTransaccion(instancia(), 100L, null, null));
+        verify(vehiculoRepository, never()).findByIdParaReservar(anyLong());
+        verify(vehiculoRepository).retenerParaVenta(100L);
+    }
+
+    private ReservaService instancia() {
+        IndiceDisponibilidad indice = mock(IndiceDisponibilidad.class);
+        when(indice.obtener(anyLong(), any())).thenAnswer(invocacion -> new CalendarioOcupacion(List.of()));
+        BloqueosVehiculo bloqueos = new BloqueosVehiculo();
+        CacheBusquedas cache = mock(CacheBusquedas.class);
+
+        DisponibilidadService disponibilidad = new DisponibilidadService();
+        ReflectionTestUtils.setField(disponibilidad, "disponibilidadRepository", disponibilidadRepository);
+        ReflectionTestUtils.setField(disponibilidad, "reservaRepository", reservaRepository);
+        ReflectionTestUtils.setField(disponibilidad, "indiceDisponibilidad", indice);
+        ReflectionTestUtils.setField(disponibilidad, "cacheBusquedas", cache);
+        ReflectionTestUtils.setField(disponibilidad, "bloqueosVehiculo", bloqueos);
+
+        ReservaService servicio = new ReservaService();
+        ReflectionTestUtils.setField(servicio, "reservaRepository", reservaRepository);
+        ReflectionTestUtils.setField(servicio, "vehiculoRepository", vehiculoRepository);
+        ReflectionTestUtils.setField(servicio, "usuarioRepository", usuarioRepository);
+        ReflectionTestUtils.setField(servicio, "eventosReservaService", mock(EventosReservaService.class));
+        ReflectionTestUtils.setField(servicio, "cacheBusquedas", cache);
+        ReflectionTestUtils.setField(servicio, "disponibilidadService", disponibilidad);
+        ReflectionTestUtils.setField(servicio, "bloqueosVehiculo", bloqueos);
+        ReflectionTestUtils.setField(servicio, "colaExpiraciones", mock(ColaExpiraciones.class));
+        ReflectionTestUtils.setField(servicio, "entityManager", mock(EntityManager.class));
+        return servicio;
+    }
+
+    /**
+     * Hace de gestor de transacciones: activa la sincronización, llama a
+     * {@code crearReserva} y al terminar suelta la fila del vehículo y los
+     * cerrojos registrados, como harían el commit o el rollback.
+     */
+    private boolean reservarEnTransaccion(ReservaService servicio, Long vehiculoId, LocalDate inicio, LocalDate fin) {
+        Reserva solicitud = new Reserva();
+        solicitud.setVehiculo(vehiculos.get(vehiculoId));
+        Usuario usuario = new Usuario();
+        usuario.setId(1L);
+        solicitud.setUsuario(usuario);
+        solicitud.setFechaInicio(inicio);
+        solicitud.setFechaFin(fin);
+
+        TransactionSynchronizationManager.initSynchronization();
+        boolean aceptada = false;
+        try {
+            servicio.crearReserva(solicitud);
+            aceptada = true;
+        } catch (ConflictoReservaException e) {
+            // Rechazada: el hueco ya estaba ocupado.
+        } finally {
+            List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            ReentrantLock fila = filasVehiculo.get(vehiculoId);
+            while (fila != null && fila.isHeldByCurrentThread()) {
+                fila.unlock();
+            }
+            for (TransactionSynchronization sincronizacion : sincronizaciones) {
+                if (aceptada) {
+                    sincronizacion.afterCommit();
+                }
+                sincronizacion.afterCompletion(aceptada
+                        ? TransactionSynchronization.STATUS_COMMITTED
+                        : TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        }
+        return aceptada;
+    }
+}
@@ -0,0 +1,118 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.indice.CalendarioOcupacion;
+import com.appCasa.app.modelo.Disponibilidad;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Filas y coste de comprobar la disponibilidad antes y después de compactar
+ * tres años de alquileres seguidos en muchos vehículos. Se mide la
+ * comprobación tal como la hace la base de datos, recorriendo las filas del
+ * vehículo, y la carga del calendario en memoria cuando no está en el índice.
+ * Fuera de la ejecución normal de pruebas:
+ * {@code mvn test -Dgroups=rendimiento -Dpruebas.excluidas=none}.
+ */
+@Tag("rendimiento")
+class CompactacionDisponibilidadRendimientoTest {
+
+    private static final int VEHICULOS = 2_000;
+    private static final int DIAS = 3 * 365;
+    private static final int CONSULTAS = 50_000;
+
+    @Test
+    void filasYLatenciaAntesYDespuesDeCompactar() {
+        Random azar = new Random(42);
+        List<List<Disponibilidad>> antes = new ArrayList<>(VEHICULOS);
+        List<List<Disponibilidad>> despues = new ArrayList<>(VEHICULOS);
+        long filasAntes = 0;
+        long filasDespues = 0;
+        long id = 0;
+        for (int v = 0; v < VEHICULOS; v++) {
+            List<Disponibilidad> originales = CompactacionDisponibilidadTest.alquileresSeguidos(azar, id, DIAS);
+            id += originales.size();
+            List<Disponibilidad> compactadas = CompactacionDisponibilidadTest.compactar(originales);
+            antes.add(originales);
+            despues.add(compactadas);
+            filasAntes += originales.size();
+            filasDespues += compactadas.size();
+        }
+
+        int[] vehiculos = new int[CONSULTAS];
+        long[] inicios = new long[CONSULTAS];
+        long[] fines = new long[CONSULTAS];
+        long primerDia = CompactacionDisponibilidadTest.HOY.toEpochDay();
+        for (int i = 0; i < CONSULTAS; i++) {
+            vehiculos[i] = azar.nextInt(VEHICULOS);
+            inicios[i] = primerDia + azar.nextInt(DIAS);
+            fines[i] = inicios[i] + 1 + azar.nextInt(7);
+        }
+
+        // La primera vuelta solo calienta el JIT.
+        recorrerFilas(antes, vehiculos, inicios, fines);
+        recorrerFilas(despues, vehiculos, inicios, fines);
+        long comienzo = System.nanoTime();
+        int libresAntes = recorrerFilas(antes, vehiculos, inicios, fines);
+        double filasNsAntes = (double) (System.nanoTime() - comienzo) / CONSULTAS;
+        comienzo = System.nanoTime();
+        int libresDespues = recorrerFilas(despues, vehiculos, inicios, fines);
+        double filasNsDespues = (double) (System.nanoTime() - comienzo) / CONSULTAS;
+        assertEquals(libresAntes, libresDespues);
+
+        cargarCalendario(antes, vehiculos, inicios, fines);
+        cargarCalendario(despues, vehiculos, inicios, fines);
+        comienzo = System.nanoTime();
+        assertEquals(libresAntes, cargarCalendario(antes, vehiculos, inicios, fines));
+        double calendarioNsAntes = (double) (System.nanoTime() - comienzo) / CONSULTAS;
+        comienzo = System.nanoTime();
+        assertEquals(libresAntes, cargarCalendario(despues, vehiculos, inicios, fines));
+        double calendarioNsDespues = (double) (System.nanoTime() - comienzo) / CONSULTAS;
+
+        System.out.printf("%d vehículos: %d filas antes, %d después (%.0f%% menos)%n",
+                VEHICULOS, filasAntes, filasDespues, 100.0 * (filasAntes - filasDespues) / filasAntes);
+        System.out.printf("Comprobación recorriendo las filas: %.2f µs antes, %.2f µs después%n",
+                filasNsAntes / 1e3, filasNsDespues / 1e3);
+        System.out.printf("Comprobación cargando el calendario: %.2f µs antes, %.2f µs después%n",
+                calendarioNsAntes / 1e3, calendarioNsDespues / 1e3);
+    }
+
+    /** Como {@code existeSolape}: mira todas las filas del vehículo. Devuelve cuántas consultas están libres. */
+    private static int recorrerFilas(List<List<Disponibilidad>> filas, int[] vehiculos, long[] inicios, long[] fines) {
+        int libres = 0;
+        for (int i = 0; i < CONSULTAS; i++) {
+            boolean libre = true;
+            for (Disponibilidad d : filas.get(vehiculos[i])) {
+                if (d.getFechaInicio().toEpochDay() < fines[i] && d.getFechaFin().toEpochDay() > inicios[i]) {
+                    libre = false;
+                    break;
+                }
+            }
+            if (libre) {
+                libres++;
+            }
+        }
+        return libres;
+    }
+
+    /** Como un fallo del índice: construye el calendario del vehículo con sus filas y lo consulta. */
+    private static int cargarCalendario(List<List<Disponibilidad>> filas, int[] vehiculos, long[] inicios, long[] fines) {
+        int libres = 0;
+        for (int i = 0; i < CONSULTAS; i++) {
+            List<CalendarioOcupacion.Tramo> tramos = new ArrayList<>();
+            for (Disponibilidad d : filas.get(vehiculos[i])) {
+                tramos.add(new CalendarioOcupacion.Tramo(d.getFechaInicio().toEpochDay(), d.getFechaFin().toEpochDay(),
+                        CalendarioOcupacion.Origen.BLOQUE, d.getId(), d.getMotivo()));
+            }
+            if (!new CalendarioOcupacion(tramos).haySolape(inicios[i], fines[i])) {
+                libres++;
+            }
+        }
+        return libres;
+    }
+}
@@ -0,0 +1,113 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.modelo.Disponibilidad;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompactacionDisponibilidadTest {
+
+    private static final int VEHICULOS = 50;
+    private static final int DIAS = 365;
+    static final LocalDate HOY = LocalDate.of(2025, 1, 1);
+
+    @Test
+    void fusionaBloquesContiguosDelMismoMotivo() {
+        List<Disponibilidad> bloques = new ArrayList<>(List.of(
+                bloque(1, 0, 3, "RESERVA_CONFIRMADA"),
+                bloque(2, 3, 5, "RESERVA_CONFIRMADA"),
+                bloque(3, 4, 9, "RESERVA_CONFIRMADA"),
+                bloque(4, 9, 10, "RESERVA_PENDIENTE"),
+                bloque(5, 11, 12, "RESERVA_CONFIRMADA"),
+                bloque(6, 1, 2, "TALLER")));
+        Collections.shuffle(bloques, new Random(7));
+        List<Disponibilidad> sobrantes = new ArrayList<>();
+
+        List<Disponibilidad> ampliados = DisponibilidadService.fusionar(bloques, sobrantes);
+
+        assertEquals(1, ampliados.size());
+        assertEquals(1L, ampliados.get(0).getId());
+        assertEquals(HOY, ampliados.get(0).getFechaInicio());
+        assertEquals(HOY.plusDays(9), ampliados.get(0).getFechaFin());
+        assertEquals(List.of(2L, 3L), sobrantes.stream().map(Disponibilidad::getId).sorted().toList());
+    }
+
+    @Test
+    void compactarDejaUnaFilaPorTramoSinCambiarLosDiasOcupados() {
+        Random azar = new Random(42);
+        long id = 0;
+        for (int v = 0; v < VEHICULOS; v++) {
+            List<Disponibilidad> originales = alquileresSeguidos(azar, id, DIAS);
+            id += originales.size();
+            Map<String, BitSet> ocupadosAntes = ocupados(originales);
+
+            List<Disponibilidad> restantes = compactar(originales);
+
+            assertEquals(ocupadosAntes, ocupados(restantes));
+            // Queda una fila por cada tramo continuo de días de un mismo motivo.
+            assertEquals(tramosContinuos(ocupadosAntes), restantes.size());
+        }
+    }
+
+    /**
+     * Alquileres de 1 a 4 días casi siempre seguidos; de vez en cuando un
+     * hueco o una pendiente. Los ids empiezan después de {@code ultimoId}.
+     */
+    static List<Disponibilidad> alquileresSeguidos(Random azar, long ultimoId, int dias) {
+        List<Disponibilidad> bloques = new ArrayList<>();
+        long id = ultimoId;
+        int dia = 0;
+        while (dia < dias) {
+            int fin = Math.min(dias, dia + 1 + azar.nextInt(4));
+            String motivo = azar.nextInt(10) == 0 ? "RESERVA_PENDIENTE" : "RESERVA_CONFIRMADA";
+            bloques.add(bloque(++id, dia, fin, motivo));
+            dia = fin + (azar.nextInt(8) == 0 ? 1 + azar.nextInt(3) : 0);
+        }
+        return bloques;
+    }
+
+    /** Las filas que quedarían tras la compactación, sin tocar las originales. */
+    static List<Disponibilidad> compactar(List<Disponibilidad> originales) {
+        List<Disponibilidad> copia = originales.stream()
+                .map(d -> new Disponibilidad(d.getId(), null, d.getFechaInicio(), d.getFechaFin(), d.getMotivo()))
+                .toList();
+        List<Disponibilidad> sobrantes = new ArrayList<>();
+        DisponibilidadService.fusionar(copia, sobrantes);
+        List<Disponibilidad> restantes = new ArrayList<>(copia);
+        restantes.removeIf(d -> sobrantes.stream().anyMatch(s -> s == d));
+        return restantes;
+    }
+
+    private static Map<String, BitSet> ocupados(List<Disponibilidad> bloques) {
+        Map<String, BitSet> dias = new HashMap<>();
+        for (Disponibilidad d : bloques) {
+            int desde = (int) (d.getFechaInicio().toEpochDay() - HOY.toEpochDay());
+            int hasta = (int) (d.getFechaFin().toEpochDay() - HOY.toEpochDay());
+            dias.computeIfAbsent(d.getMotivo(), m -> new BitSet()).set(desde, hasta);
+        }
+        return dias;
+    }
+
+    private static int tramosContinuos(Map<String, BitSet> ocupados) {
+        int tramos = 0;
+        for (BitSet dias : ocupados.values()) {
+            for (int i = dias.nextSetBit(0); i >= 0; i = dias.nextSetBit(dias.nextClearBit(i))) {
+                tramos++;
+            }
+        }
+        return tramos;
+    }
+
+    private static Disponibilidad bloque(long id, int desde, int hasta, String motivo) {
+        return new Disponibilidad(id, null, HOY.plusDays(desde), HOY.plusDays(hasta), motivo);
+    }
+}
@@ -0,0 +1,165 @@
+package com.appCasa.app.servicio;
+
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConexionSmtpTest {
+
+    private static final int CORREOS = 20;
+
+    private ServidorSmtp servidor;
+    private JavaMailSenderImpl remitente;
+
+    @BeforeEach
+    void arrancar() throws IOException {
+        servidor = new ServidorSmtp();
+        remitente = new JavaMailSenderImpl();
+        remitente.setHost("localhost");
+        remitente.setPort(servidor.puerto());
+    }
+
+    @AfterEach
+    void parar() throws IOException {
+        servidor.close();
+    }
+
+    @Test
+    void reutilizaLaConexionEntreCorreos() throws Exception {
+        try (ConexionSmtp conexion = new ConexionSmtp(remitente)) {
+            for (int i = 0; i < CORREOS; i++) {
+                conexion.enviar(mensaje(i));
+            }
+            assertEquals(1, conexion.getAperturas());
+        }
+        assertEquals(1, servidor.conexiones.get());
+        assertEquals(CORREOS, servidor.mensajes.get());
+    }
+
+    @Test
+    void vuelveAConectarSiElServidorCierra() throws Exception {
+        servidor.cortarTras = 3;
+        try (ConexionSmtp conexion = new ConexionSmtp(remitente)) {
+            for (int i = 0; i < 7; i++) {
+                conexion.enviar(mensaje(i));
+            }
+            assertEquals(3, conexion.getAperturas());
+        }
+        assertEquals(7, servidor.mensajes.get());
+    }
+
+    @Test
+    void avisaSiNoPuedeConectar() throws Exception {
+        servidor.close();
+        try (ConexionSmtp conexion = new ConexionSmtp(remitente)) {
+            assertThrows(ConexionSmtp.SinConexionException.class, () -> conexion.enviar(mensaje(0)));
+            assertNotNull(conexion.getFalloConexion());
+            assertEquals(0, conexion.getAperturas());
+            conexion.close();
+            assertNull(conexion.getFalloConexion());
+        }
+    }
+
+    private MimeMessage mensaje(int i) throws Exception {
+        MimeMessage mensaje = remitente.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mensaje, true);
+        helper.setTo("usuario" + i + "@example.com");
+        helper.setFrom("no-reply@hbcavonni.com");
+        helper.setSubject("Correo " + i);
+        helper.setText("<p>Cuerpo " + i + "</p>", true);
+        return mensaje;
+    }
+
+    /** Servidor SMTP mínimo en el propio proceso: acepta todo y cuenta conexiones y mensajes. */
+    private static final class ServidorSmtp implements AutoCloseable {
+
+        private final ServerSocket socket = new ServerSocket(0);
+        private final AtomicInteger conexiones = new AtomicInteger();
+        private final AtomicInteger mensajes = new AtomicInteger();
+        private volatile int cortarTras = Integer.MAX_VALUE;
+
+        ServidorSmtp() throws IOException {
+            Thread aceptador = new Thread(() -> {
+                while (!socket.isClosed()) {
+                    try {
+                        Socket cliente = socket.accept();
+                        conexiones.incrementAndGet();
+                        Thread sesion = new Thread(() -> atender(cliente));
+                        sesion.setDaemon(true);
+                        sesion.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            aceptador.setDaemon(true);
+            aceptador.start();
+        }
+
+        int puerto() {
+            return socket.getLocalPort();
+        }
+
+        private void atender(Socket cliente) {
+            try (cliente) {
+                BufferedReader entrada = new BufferedReader(
+                        new InputStreamReader(cliente.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream salida = cliente.getOutputStream();
+                responder(salida, "220 localhost ESMTP");
+                int enEstaConexion = 0;
+                String linea;
+                while ((linea = entrada.readLine()) != null) {
+                    String orden = linea.length() >= 4 ? linea.substring(0, 4).toUpperCase() : linea.toUpperCase();
+                    switch (orden) {
+                        case "EHLO", "HELO" -> responder(salida, "250-localhost\r\n250 8BITMIME");
+                        case "DATA" -> {
+                            responder(salida, "354 Adelante");
+                            while (!".".equals(entrada.readLine())) {
+                                // Se descarta el contenido.
+                            }
+                            mensajes.incrementAndGet();
+                            responder(salida, "250 OK");
+                            if (++enEstaConexion == cortarTras) {
+                                return;
+                            }
+                        }
+                        case "QUIT" -> {
+                            responder(salida, "221 Adios");
+                            return;
+                        }
+                        default -> responder(salida, "250 OK");
+                    }
+                }
+            } catch (IOException e) {
+                // El cliente se ha ido.
+            }
+        }
+
+        private static void responder(OutputStream salida, String respuesta) throws IOException {
+            salida.write((respuesta + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            salida.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
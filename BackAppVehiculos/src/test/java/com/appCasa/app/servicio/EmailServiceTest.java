@@ -0,0 +1,199 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.modelo.CorreoPendiente;
+import com.appCasa.app.repositorio.CorreoPendienteRepository;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Estados de un correo en la cola: se coge, se envía o se reintenta con espera
+ * exponencial, se descarta y se reactiva. La tabla es una lista en memoria que
+ * responde a las consultas del repositorio como lo harían las de JPQL.
+ */
+class EmailServiceTest {
+
+    private final List<CorreoPendiente> tabla = new ArrayList<>();
+    private final Map<String, Exception> fallos = new HashMap<>();
+
+    private EmailService emailService;
+    private ConexionSmtp conexion;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        CorreoPendienteRepository repositorio = mock(CorreoPendienteRepository.class);
+        when(repositorio.findPendientes(any(), any())).thenAnswer(invocacion -> {
+            LocalDateTime ahora = invocacion.getArgument(0);
+            Limit limite = invocacion.getArgument(1);
+            return tabla.stream()
+                    .filter(c -> c.getEnviado() == null && c.getDescartado() == null
+                            && !c.getSiguienteIntento().isAfter(ahora))
+                    .sorted(Comparator.comparing(CorreoPendiente::getId))
+                    .limit(limite.max())
+                    .toList();
+        });
+        when(repositorio.reactivarDescartados(any())).thenAnswer(invocacion -> {
+            LocalDateTime ahora = invocacion.getArgument(0);
+            int reactivados = 0;
+            for (CorreoPendiente c : tabla) {
+                if (c.getDescartado() != null) {
+                    c.setDescartado(null);
+                    c.setIntentos(0);
+                    c.setSiguienteIntento(ahora);
+                    reactivados++;
+                }
+            }
+            return reactivados;
+        });
+
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        when(mailSender.createMimeMessage()).thenAnswer(invocacion -> new MimeMessage(Session.getInstance(new Properties())));
+
+        emailService = new EmailService();
+        ReflectionTestUtils.setField(emailService, "correoPendienteRepository", repositorio);
+        ReflectionTestUtils.setField(emailService, "mailSender", mailSender);
+        ReflectionTestUtils.setField(emailService, "correoHabilitado", true);
+
+        conexion = mock(ConexionSmtp.class);
+        doAnswer(invocacion -> {
+            MimeMessage mensaje = invocacion.getArgument(0);
+            Exception fallo = fallos.get(mensaje.getAllRecipients()[0].toString());
+            if (fallo != null) {
+                throw fallo;
+            }
+            return null;
+        }).when(conexion).enviar(any());
+    }
+
+    @Test
+    void cogeHastaElLimiteYMarcaLosEnviados() {
+        CorreoPendiente primero = correo("uno@example.com");
+        CorreoPendiente segundo = correo("dos@example.com");
+        CorreoPendiente tercero = correo("tres@example.com");
+
+        assertEquals(2, emailService.enviarPendientes(2, conexion));
+        assertNotNull(primero.getEnviado());
+        assertNotNull(segundo.getEnviado());
+        assertNull(tercero.getEnviado());
+
+        assertEquals(1, emailService.enviarPendientes(2, conexion));
+        assertNotNull(tercero.getEnviado());
+        assertEquals(0, emailService.enviarPendientes(2, conexion));
+    }
+
+    @Test
+    void reintentaConEsperaExponencialYDescartaTrasOchoIntentos() {
+        fallos.put("lento@example.com", new MessagingException("451 Inténtalo más tarde"));
+        CorreoPendiente correo = correo("lento@example.com");
+
+        List<Long> esperas = new ArrayList<>();
+        for (int intento = 1; intento < 8; intento++) {
+            LocalDateTime antes = LocalDateTime.now();
+            assertEquals(1, emailService.enviarPendientes(10, conexion));
+
+            assertEquals(intento, correo.getIntentos());
+            assertNull(correo.getDescartado());
+            // El envío tarda mucho menos de un segundo, así que redondeando se obtiene la espera exacta.
+            esperas.add(Duration.between(antes, correo.getSiguienteIntento()).toSeconds());
+            // Mientras no llega su hora no se vuelve a coger.
+            assertEquals(0, emailService.enviarPendientes(10, conexion));
+            correo.setSiguienteIntento(antes);
+        }
+        assertEquals(List.of(30L, 60L, 120L, 240L, 480L, 960L, 1920L), esperas);
+
+        assertEquals(1, emailService.enviarPendientes(10, conexion));
+        assertEquals(8, correo.getIntentos());
+        assertNotNull(correo.getDescartado());
+        assertTrue(correo.getUltimoError().contains("451"));
+        assertEquals(0, emailService.enviarPendientes(10, conexion));
+    }
+
+    @Test
+    void descartaAlMomentoLasDireccionesRechazadas() throws Exception {
+        Address[] invalidas = { new InternetAddress("nadie@example.com") };
+        fallos.put("nadie@example.com", new SendFailedException("550 No existe", null, null, null, invalidas));
+        fallos.put("mal@example.com", new AddressException("Dirección mal formada"));
+        CorreoPendiente rechazado = correo("nadie@example.com");
+        CorreoPendiente malFormado = correo("mal@example.com");
+
+        assertEquals(2, emailService.enviarPendientes(10, conexion));
+        assertEquals(1, rechazado.getIntentos());
+        assertNotNull(rechazado.getDescartado());
+        assertEquals(1, malFormado.getIntentos());
+        assertNotNull(malFormado.getDescartado());
+    }
+
+    @Test
+    void cortaElLoteSinGastarIntentosSiNoHayServidor() throws Exception {
+        fallos.put("uno@example.com", new ConexionSmtp.SinConexionException(new MessagingException("Connection refused")));
+        CorreoPendiente primero = correo("uno@example.com");
+        CorreoPendiente segundo = correo("dos@example.com");
+
+        assertEquals(0, emailService.enviarPendientes(10, conexion));
+        verify(conexion, times(1)).enviar(any());
+        for (CorreoPendiente c : List.of(primero, segundo)) {
+            assertEquals(0, c.getIntentos());
+            assertNull(c.getEnviado());
+            assertNull(c.getDescartado());
+        }
+    }
+
+    @Test
+    void reactivarDescartadosLosVuelveACoger() throws Exception {
+        Address[] invalidas = { new InternetAddress("nadie@example.com") };
+        fallos.put("nadie@example.com", new SendFailedException("550 No existe", null, null, null, invalidas));
+        CorreoPendiente correo = correo("nadie@example.com");
+        emailService.enviarPendientes(10, conexion);
+        assertNotNull(correo.getDescartado());
+
+        fallos.clear();
+        assertEquals(1, emailService.reactivarDescartados());
+        assertNull(correo.getDescartado());
+        assertEquals(0, correo.getIntentos());
+
+        assertEquals(1, emailService.enviarPendientes(10, conexion));
+        assertNotNull(correo.getEnviado());
+    }
+
+    private CorreoPendiente correo(String destinatario) {
+        LocalDateTime ahora = LocalDateTime.now();
+        CorreoPendiente correo = new CorreoPendiente();
+        correo.setId((long) tabla.size() + 1);
+        correo.setDestinatario(destinatario);
+        correo.setAsunto("Asunto");
+        correo.setCuerpo("<p>Cuerpo</p>");
+        correo.setCreado(ahora);
+        correo.setSiguienteIntento(ahora);
+        tabla.add(correo);
+        return correo;
+    }
+}
@@ -0,0 +1,177 @@
+package com.appCasa.app.servicio;
+
+import com.appCasa.app.modelo.EventoReserva;
+import com.appCasa.app.modelo.TipoEventoReserva;
+import com.appCasa.app.modelo.TipoOperacion;
+import com.appCasa.app.plantilla.Plantillas;
+import com.appCasa.app.repositorio.EventoReservaRepository;
+import com.appCasa.app.repositorio.VehiculoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Un evento cuyo correo falla en la base de datos no debe perder su registro
+ * de reintentos ni arrastrar al resto del lote. El gestor de transacciones
+ * guarda el estado de los eventos al empezar y lo restaura si se deshace,
+ * como haría la base de datos.
+ */
+class EventosReservaServiceTest {
+
+    private final List<EventoReserva> tabla = new ArrayList<>();
+
+    private EventosReservaService eventosReservaService;
+    private EmailService emailService;
+
+    @BeforeEach
+    void preparar() {
+        EventoReservaRepository repositorio = mock(EventoReservaRepository.class);
+        when(repositorio.findIdsPendientes(any(), any())).thenAnswer(invocacion -> {
+            LocalDateTime ahora = invocacion.getArgument(0);
+            Limit limite = invocacion.getArgument(1);
+            return tabla.stream()
+                    .filter(e -> pendiente(e, ahora))
+                    .sorted(Comparator.comparing(EventoReserva::getId))
+                    .limit(limite.max())
+                    .map(EventoReserva::getId)
+                    .toList();
+        });
+        when(repositorio.findPendienteParaDespachar(anyLong(), any())).thenAnswer(invocacion -> {
+            Long id = invocacion.getArgument(0);
+            LocalDateTime ahora = invocacion.getArgument(1);
+            return tabla.stream().filter(e -> e.getId().equals(id) && pendiente(e, ahora)).findFirst();
+        });
+
+        emailService = mock(EmailService.class);
+        when(emailService.encolar(anyString(), anyString(), any())).thenReturn(true);
+        Plantillas plantillas = mock(Plantillas.class);
+        when(plantillas.renderizar(anyString(), any())).thenReturn("<p>cuerpo</p>");
+
+        eventosReservaService = new EventosReservaService();
+        ReflectionTestUtils.setField(eventosReservaService, "eventoReservaRepository", repositorio);
+        ReflectionTestUtils.setField(eventosReservaService, "vehiculoRepository", mock(VehiculoRepository.class));
+        ReflectionTestUtils.setField(eventosReservaService, "emailService", emailService);
+        ReflectionTestUtils.setField(eventosReservaService, "colaAlertas", mock(ColaAlertas.class));
+        ReflectionTestUtils.setField(eventosReservaService, "plantillas", plantillas);
+        ReflectionTestUtils.setField(eventosReservaService, "transactionManager", new TransaccionesEnMemoria());
+    }
+
+    @Test
+    void unCorreoQueFallaEnLaBaseDeDatosNoBloqueaLaBandeja() {
+        EventoReserva malo = evento("malo@example.com");
+        EventoReserva bueno = evento("bueno@example.com");
+        when(emailService.encolar(eq("malo@example.com"), anyString(), any()))
+                .thenThrow(new DataIntegrityViolationException("Data too long for column 'asunto'"));
+
+        LocalDateTime antes = LocalDateTime.now();
+        assertEquals(2, eventosReservaService.despacharPendientes(10));
+
+        assertEquals(1, malo.getIntentos());
+        assertNull(malo.getProcesado());
+        assertTrue(malo.getUltimoError().contains("Data too long"));
+        assertTrue(malo.getSiguienteIntento().isAfter(antes));
+        assertNotNull(bueno.getProcesado());
+        assertNull(bueno.getUltimoError());
+
+        // Hasta que llega su hora, el que falló no se vuelve a coger.
+        assertEquals(0, eventosReservaService.despacharPendientes(10));
+    }
+
+    @Test
+    void trasDiezIntentosSeDejaMarcadoConElError() {
+        EventoReserva malo = evento("malo@example.com");
+        when(emailService.encolar(eq("malo@example.com"), anyString(), any()))
+                .thenThrow(new DataIntegrityViolationException("Data too long for column 'asunto'"));
+
+        for (int intento = 1; intento < 10; intento++) {
+            eventosReservaService.despacharPendientes(10);
+            assertEquals(intento, malo.getIntentos());
+            assertNull(malo.getProcesado());
+            malo.setSiguienteIntento(LocalDateTime.now().minusSeconds(1));
+        }
+        eventosReservaService.despacharPendientes(10);
+        assertEquals(10, malo.getIntentos());
+        assertNotNull(malo.getProcesado());
+        assertNotNull(malo.getUltimoError());
+        assertEquals(0, eventosReservaService.despacharPendientes(10));
+    }
+
+    private static boolean pendiente(EventoReserva evento, LocalDateTime ahora) {
+        return evento.getProcesado() == null && !evento.getSiguienteIntento().isAfter(ahora);
+    }
+
+    private EventoReserva evento(String emailUsuario) {
+        LocalDateTime ahora = LocalDateTime.now();
+        EventoReserva evento = new EventoReserva();
+        evento.setId((long) tabla.size() + 1);
+        evento.setTipo(TipoEventoReserva.CREADA);
+        evento.setTipoOperacion(TipoOperacion.ALQUILER);
+        evento.setReservaId(evento.getId());
+        evento.setVehiculoId(1L);
+        evento.setVehiculo("Seat Ibiza");
+        evento.setNombreUsuario("Ana");
+        evento.setEmailUsuario(emailUsuario);
+        evento.setCreado(ahora);
+        evento.setSiguienteIntento(ahora);
+        tabla.add(evento);
+        return evento;
+    }
+
+    /** Guarda el estado de la bandeja al empezar cada transacción y lo restaura si se deshace. */
+    private final class TransaccionesEnMemoria extends AbstractPlatformTransactionManager {
+
+        private record Fila(EventoReserva evento, int intentos, LocalDateTime siguienteIntento,
+                LocalDateTime procesado, String ultimoError) {
+        }
+
+        @Override
+        protected Object doGetTransaction() {
+            return new ArrayList<Fila>();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void doBegin(Object transaccion, TransactionDefinition definicion) {
+            for (EventoReserva e : tabla) {
+                ((List<Fila>) transaccion).add(new Fila(e, e.getIntentos(), e.getSiguienteIntento(),
+                        e.getProcesado(), e.getUltimoError()));
+            }
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus estado) {
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void doRollback(DefaultTransactionStatus estado) {
+            for (Fila fila : (List<Fila>) estado.getTransaction()) {
+                fila.evento().setIntentos(fila.intentos());
+                fila.evento().setSiguienteIntento(fila.siguienteIntento());
+                fila.evento().setProcesado(fila.procesado());
+                fila.evento().setUltimoError(fila.ultimoError());
+            }
+        }
+    }
+}